@@ -12,7 +12,9 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.util.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -26,34 +28,24 @@ public class AiTestController {
     private final AiClientService aiClientService; // Serwis do komunikacji z AI
     private static final int HISTORY_WINDOW_SIZE = 20; // ZMIEŃ TĘ WARTOŚĆ, ABY DOSTOSOWAĆ DŁUGOŚĆ HISTORII W CAŁYM KODZIE musi być zgodne z AI (app/model.py) 
 
-    private final Map<String, AtomicInteger> currentSecondRequests = new ConcurrentHashMap<>();
-    private final Map<String, LinkedList<Double>> trafficHistory = new ConcurrentHashMap<>();
+    // Licznik bieżącej sekundy i historia ruchu per serwer, trzymane razem w jednym wpisie
+    private final Map<String, ServerTraffic> traffic = new ConcurrentHashMap<>();
 
     @GetMapping("/{serverId}")
     public ResponseEntity<AiPredictionResult> testPrediction(@PathVariable String serverId) {
         
         // 1. Zliczamy uderzenie
-        currentSecondRequests.computeIfAbsent(serverId, k -> new AtomicInteger(0)).incrementAndGet();
-
-        // 2. Pobieramy historię. Używamy stałej do wypełnienia zerami.
-        List<Double> history = trafficHistory.computeIfAbsent(serverId, k -> 
-            new LinkedList<>(Collections.nCopies(HISTORY_WINDOW_SIZE, 0.0))
-        );
-
-        // 3. Tworzymy bezpieczną kopię do wysłania
-        List<Double> payload = new ArrayList<>(history);
-
-        // 4. ZABEZPIECZENIE: Gwarantujemy, że wysyłamy dokładnie tyle, ile wynosi stała.
-        // Jeśli lista jest za krótka (np. błąd inicjalizacji) - dodajemy zera.
-        while (payload.size() < HISTORY_WINDOW_SIZE) {
-            payload.add(0, 0.0);
-        }
-        // Jeśli lista jest za długa - ucinamy.
-        while (payload.size() > HISTORY_WINDOW_SIZE) {
-            payload.remove(0);
+        ServerTraffic serverTraffic = traffic.get(serverId);
+        if (serverTraffic == null) {
+            serverTraffic = traffic.computeIfAbsent(serverId, k -> new ServerTraffic());
         }
+        serverTraffic.currentSecond.incrementAndGet();
 
-        // 5. Pytamy AI o radę
+        // 2. Spójna kopia historii (od najstarszej próbki). Bufor ma zawsze dokładnie
+        // HISTORY_WINDOW_SIZE próbek, brakujące najstarsze są zerami.
+        List<Double> payload = Arrays.stream(serverTraffic.history.snapshot()).boxed().toList();
+
+        // 3. Pytamy AI o radę
         AiPredictionResult prediction = aiClientService.getPredictionForServer(serverId, payload);
         
         // --- REAKCJA NA DECYZJĘ AI (DODANE) ---
@@ -84,29 +76,15 @@ public class AiTestController {
      */
     @Scheduled(fixedRate = 1000)
     public void updateTrafficMetrics() {
-        Set<String> allServers = new HashSet<>();
-        allServers.addAll(currentSecondRequests.keySet());
-        allServers.addAll(trafficHistory.keySet());
+        // Jedyny zapisujący do buforów historii; nic tu nie alokujemy
+        for (ServerTraffic serverTraffic : traffic.values()) {
+            serverTraffic.history.add(serverTraffic.currentSecond.getAndSet(0));
+        }
+    }
 
-        for (String serverId : allServers) {
-            AtomicInteger counter = currentSecondRequests.get(serverId);
-            double requestsInLastSecond = (counter != null) ? counter.getAndSet(0) : 0.0;
+    private static final class ServerTraffic {
 
-            trafficHistory.compute(serverId, (k, history) -> {
-                // Inicjalizacja (jeśli null) z użyciem stałej
-                if (history == null) {
-                    history = new LinkedList<>(Collections.nCopies(HISTORY_WINDOW_SIZE, 0.0));
-                }
-                
-                history.add(requestsInLastSecond);
-                
-                // Pilnowanie rozmiaru z użyciem stałej
-                while (history.size() > HISTORY_WINDOW_SIZE) {
-                    history.removeFirst();
-                }
-                
-                return history;
-            });
-        }
+        private final AtomicInteger currentSecond = new AtomicInteger();
+        private final TrafficRingBuffer history = new TrafficRingBuffer(HISTORY_WINDOW_SIZE);
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.example.abra.controller;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fixed-size window of the most recent samples of one series, kept in a primitive array.
+ * <p>
+ * One thread appends with {@link #add}; any number of threads may take a {@link #snapshot}
+ * without locking. Writes are guarded by a sequence number (seqlock): it is odd while a write
+ * is in progress, and a reader retries if it changed while the reader was copying. Until the
+ * window has been filled, the missing oldest samples read as 0.
+ */
+final class TrafficRingBuffer {
+
+    private final double[] samples;
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Slot of the next sample, which holds the oldest one; written only by the writer and
+     * read under {@link #sequence}.
+     */
+    private int next;
+
+    TrafficRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.samples = new double[capacity];
+    }
+
+    int capacity() {
+        return samples.length;
+    }
+
+    /**
+     * Append a sample, overwriting the oldest one. Only one thread may add.
+     */
+    void add(double sample) {
+        long seq = sequence.get();
+        sequence.set(seq + 1);
+        // Keep the array writes below from being reordered before the odd sequence number
+        VarHandle.storeStoreFence();
+        samples[next] = sample;
+        next = next + 1 == samples.length ? 0 : next + 1;
+        sequence.set(seq + 2);
+    }
+
+    /**
+     * Copy of the window, oldest sample first.
+     */
+    double[] snapshot() {
+        return snapshot(new double[samples.length]);
+    }
+
+    /**
+     * Copy the window, oldest sample first, into {@code target} of length {@link #capacity()}.
+     */
+    double[] snapshot(double[] target) {
+        if (target.length != samples.length) {
+            throw new IllegalArgumentException("target length must equal the capacity");
+        }
+        while (true) {
+            long seq = sequence.get();
+            if ((seq & 1) == 0) {
+                int start = next;
+                int tail = samples.length - start;
+                System.arraycopy(samples, start, target, 0, tail);
+                System.arraycopy(samples, 0, target, tail, start);
+                // Keep the copy above from being reordered after the validating read
+                VarHandle.loadLoadFence();
+                if (sequence.get() == seq) {
+                    return target;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.abra.controllers;
+
+import com.example.abra.services.ConversionIngestionService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/events")
+@RequiredArgsConstructor
+public class ConversionEventController {
+
+    private final ConversionIngestionService conversionIngestionService;
+
+    /**
+     * Accepts a batch of conversion events as NDJSON or a JSON array, streamed from the body.
+     */
+    @PostMapping(
+            value = "/conversions",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ConversionIngestionService.IngestionResult> ingest(HttpServletRequest request)
+            throws IOException {
+        ConversionIngestionService.IngestionResult result = conversionIngestionService.ingest(request.getInputStream());
+        if (result.error() != null) {
+            return ResponseEntity.badRequest().body(result);
+        }
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(result);
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.abra.controllers;
 
 import com.example.abra.models.DomainModel;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
 import com.example.abra.services.DomainModelService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.lang.NonNull;
 import org.springframework.web.bind.annotation.*;
@@ -13,6 +16,7 @@ import org.springframework.web.bind.annotation.*;
 public class DomainModelController {
 
     private final DomainModelService domainModelService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @GetMapping
     public ResponseEntity<Iterable<DomainModel>> getAllDomains() {
@@ -34,6 +38,8 @@ public class DomainModelController {
         @RequestBody @NonNull DomainModel domainModel
     ) {
         DomainModel created = domainModelService.addDomain(domainModel);
+        eventPublisher.publishEvent(
+            new RoutingConfigChangedEvent(this, RoutingEntityType.DOMAIN, created.getDomain_id()));
         return ResponseEntity.ok(created);
     }
 
@@ -43,12 +49,16 @@ public class DomainModelController {
         @RequestBody @NonNull DomainModel domainModel
     ) {
         domainModelService.updateDomain(domainModel);
+        eventPublisher.publishEvent(
+            new RoutingConfigChangedEvent(this, RoutingEntityType.DOMAIN, domainModel.getDomain_id()));
         return ResponseEntity.noContent().build();
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteDomain(@PathVariable @NonNull String id) {
         domainModelService.deleteDomainById(id);
+        eventPublisher.publishEvent(
+            new RoutingConfigChangedEvent(this, RoutingEntityType.DOMAIN, id));
         return ResponseEntity.noContent().build();
     }
 }
@@ -1,8 +1,11 @@
 package com.example.abra.controllers;
 
 import com.example.abra.models.EndpointModel;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
 import com.example.abra.services.EndpointModelService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -14,6 +17,7 @@ import java.util.List;
 public class EndpointModelController {
 
     private final EndpointModelService endpointModelService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @GetMapping
     public ResponseEntity<List<EndpointModel>> getAll() {
@@ -30,6 +34,8 @@ public class EndpointModelController {
     @PostMapping
     public ResponseEntity<EndpointModel> create(@RequestBody EndpointModel endpointModel) {
         EndpointModel created = endpointModelService.addEndpoint(endpointModel);
+        eventPublisher.publishEvent(
+                new RoutingConfigChangedEvent(this, RoutingEntityType.ENDPOINT, created.getUrl()));
         return ResponseEntity.ok(created);
     }
 
@@ -39,12 +45,16 @@ public class EndpointModelController {
             @RequestBody EndpointModel endpointModel
     ) {
         endpointModelService.updateEndpoint(endpointModel);
+        eventPublisher.publishEvent(
+                new RoutingConfigChangedEvent(this, RoutingEntityType.ENDPOINT, endpointModel.getUrl()));
         return ResponseEntity.noContent().build();
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable String id) {
         endpointModelService.deleteEndpointById(id);
+        eventPublisher.publishEvent(
+                new RoutingConfigChangedEvent(this, RoutingEntityType.ENDPOINT, id));
         return ResponseEntity.noContent().build();
     }
 }
@@ -0,0 +1,46 @@
+package com.example.abra.controllers;
+
+import com.example.abra.services.LatencyHistogram;
+import com.example.abra.services.LatencyMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/metrics/latency")
+@RequiredArgsConstructor
+public class LatencyMetricsController {
+
+    private final LatencyMetrics latencyMetrics;
+
+    /**
+     * p50/p90/p99/p99.9 (microseconds) per variant and endpoint over the current interval
+     * plus the given number of finished intervals before it.
+     */
+    @GetMapping
+    public ResponseEntity<LatencyMetrics.LatencyReport> getReport(
+            @RequestParam(defaultValue = "0") int intervals
+    ) {
+        return ResponseEntity.ok(latencyMetrics.report(Math.max(intervals, 0)));
+    }
+
+    /**
+     * Non-empty histogram buckets of one variant or endpoint.
+     */
+    @GetMapping("/{scope}/distribution")
+    public ResponseEntity<List<LatencyHistogram.Bucket>> getDistribution(
+            @PathVariable String scope,
+            @RequestParam String id,
+            @RequestParam(defaultValue = LatencyMetrics.UPSTREAM) String kind,
+            @RequestParam(defaultValue = "0") int intervals
+    ) {
+        LatencyHistogram.Snapshot distribution =
+                latencyMetrics.distribution(kind, scope, id, Math.max(intervals, 0));
+        if (distribution == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(distribution.getBuckets());
+    }
+}
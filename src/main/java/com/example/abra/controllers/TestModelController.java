@@ -1,8 +1,15 @@
 package com.example.abra.controllers;
 
 import com.example.abra.models.TestModel;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.services.EndpointService;
+import com.example.abra.services.ExperimentStatistics;
 import com.example.abra.services.TestModelService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.lang.NonNull;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -15,6 +22,10 @@ import java.util.List;
 public class TestModelController {
 
     private final TestModelService testModelService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ExperimentStatistics experimentStatistics;
+    private final RoutingTable routingTable;
+    private final EndpointService endpointService;
 
     @GetMapping
     public ResponseEntity<List<TestModel>> getAll() {
@@ -28,9 +39,37 @@ public class TestModelController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /**
+     * Live comparison of the test's variants against the control (the first variant unless given).
+     */
+    @GetMapping("/{id}/statistics")
+    public ResponseEntity<ExperimentStatistics.TestStatistics> getStatistics(
+            @PathVariable @NonNull String id,
+            @RequestParam(required = false) String control
+    ) {
+        return testModelService.findByTestId(id)
+                .map(test -> experimentStatistics.analyze(id, test.getVariantModels(), control))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Configured and capacity-adjusted (effective) weights of the active test's variants.
+     */
+    @GetMapping("/{id}/weights")
+    public ResponseEntity<List<EndpointService.VariantWeight>> getWeights(@PathVariable @NonNull String id) {
+        TestRoute test = routingTable.current().findTest(id);
+        if (test == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(endpointService.variantWeights(test));
+    }
+
     @PostMapping
     public ResponseEntity<TestModel> create(@RequestBody @NonNull TestModel testModel) {
         TestModel created = testModelService.addTest(testModel);
+        eventPublisher.publishEvent(
+                new RoutingConfigChangedEvent(this, RoutingEntityType.TEST, created.getTest_id()));
         return ResponseEntity.ok(created);
     }
 
@@ -40,12 +79,16 @@ public class TestModelController {
             @RequestBody @NonNull TestModel testModel
     ) {
         testModelService.updateTest(testModel);
+        eventPublisher.publishEvent(
+                new RoutingConfigChangedEvent(this, RoutingEntityType.TEST, testModel.getTest_id()));
         return ResponseEntity.ok("Hello world");
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable @NonNull String id) {
         testModelService.deleteTestById(id);
+        eventPublisher.publishEvent(
+                new RoutingConfigChangedEvent(this, RoutingEntityType.TEST, id));
         return ResponseEntity.noContent().build();
     }
 }
@@ -0,0 +1,38 @@
+package com.example.abra.controllers;
+
+import com.example.abra.services.TrafficRollups;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/metrics/traffic")
+@RequiredArgsConstructor
+public class TrafficMetricsController {
+
+    private final TrafficRollups trafficRollups;
+
+    /**
+     * Request counts and rates of every variant or endpoint (or only {@code id}) over the
+     * latest {@code points} buckets of the given resolution (second, minute or hour).
+     */
+    @GetMapping("/{scope}")
+    public ResponseEntity<List<TrafficRollups.TrafficSeries>> getSeries(
+            @PathVariable String scope,
+            @RequestParam(required = false) String id,
+            @RequestParam(defaultValue = "minute") String resolution,
+            @RequestParam(defaultValue = "60") int points
+    ) {
+        TrafficRollups.Resolution parsed = TrafficRollups.Resolution.parse(resolution);
+        if (parsed == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        List<TrafficRollups.TrafficSeries> series = trafficRollups.query(scope, id, parsed, points);
+        if (series == null) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(series);
+    }
+}
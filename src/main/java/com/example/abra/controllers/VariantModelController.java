@@ -2,9 +2,12 @@ package com.example.abra.controllers;
 
 import com.example.abra.models.TestModel;
 import com.example.abra.models.VariantModel;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
 import com.example.abra.services.TestModelService;
 import com.example.abra.services.VariantModelService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,6 +22,7 @@ public class VariantModelController {
 
     private final VariantModelService variantModelService;
     private final TestModelService testModelService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @GetMapping
     public ResponseEntity<List<VariantModel>> getAll() {
@@ -50,6 +54,8 @@ public class VariantModelController {
     @PostMapping
     public ResponseEntity<VariantModel> create(@RequestBody VariantModel variantModel) {
         VariantModel created = variantModelService.addVariant(variantModel);
+        eventPublisher.publishEvent(
+                new RoutingConfigChangedEvent(this, RoutingEntityType.VARIANT, created.getVariant_id()));
         return ResponseEntity.ok(created);
     }
 
@@ -60,12 +66,16 @@ public class VariantModelController {
     ) {
         variantModel.setVariant_id(id);
         variantModelService.updateVariant(variantModel);
+        eventPublisher.publishEvent(
+                new RoutingConfigChangedEvent(this, RoutingEntityType.VARIANT, id));
         return ResponseEntity.ok("Updated");
     }
 
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> delete(@PathVariable String id) {
         variantModelService.deleteVariantById(id);
+        eventPublisher.publishEvent(
+                new RoutingConfigChangedEvent(this, RoutingEntityType.VARIANT, id));
         return ResponseEntity.noContent().build();
     }
 }
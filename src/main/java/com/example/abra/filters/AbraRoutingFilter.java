@@ -1,23 +1,25 @@
 package com.example.abra.filters;
 
-import com.example.abra.models.DomainModel;
-import com.example.abra.models.EndpointModel;
-import com.example.abra.models.TestModel;
-import com.example.abra.models.VariantModel;
-import com.example.abra.services.DomainModelService;
+import com.example.abra.models.RoutingMode;
+import com.example.abra.routing.Assignment;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.UpstreamProxy;
+import com.example.abra.routing.VariantAssigner;
+import com.example.abra.routing.VariantRoute;
+import com.example.abra.services.DecisionLog;
 import com.example.abra.services.EndpointService;
-import com.example.abra.services.TestModelService;
-import com.example.abra.services.VariantModelService;
+import com.example.abra.services.ExposureEventPipeline;
+import com.example.abra.services.LatencyMetrics;
+import com.example.abra.services.RoutingMetrics;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.ThreadLocalRandom;
 
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -31,18 +33,18 @@ import org.springframework.web.filter.OncePerRequestFilter;
 @RequiredArgsConstructor
 public class AbraRoutingFilter extends OncePerRequestFilter {
 
-    private final DomainModelService domainModelService;
-    private final TestModelService testModelService;
-    private final VariantModelService variantModelService;
+    private final RoutingTable routingTable;
+    private final VariantAssigner variantAssigner;
     private final EndpointService endpointService;
+    private final UpstreamProxy upstreamProxy;
+    private final RoutingMetrics routingMetrics;
+    private final LatencyMetrics latencyMetrics;
+    private final ExposureEventPipeline exposureEvents;
+    private final DecisionLog decisionLog;
 
     @Value("${abra.admin.host}")
     private String adminHost;
 
-    private static final String VARIANT_COOKIE_PREFIX = "abra_variant_";
-    private static final int COOKIE_MAX_AGE_DAYS = 30;
-    private static final int COOKIE_MAX_AGE_SECONDS = COOKIE_MAX_AGE_DAYS * 24 * 60 * 60;
-
     @Override
     protected boolean shouldNotFilter(@NonNull HttpServletRequest request) {
         return request.getServerName().equalsIgnoreCase(adminHost);
@@ -53,6 +55,7 @@ public class AbraRoutingFilter extends OncePerRequestFilter {
             @NonNull HttpServletRequest request,
             @NonNull HttpServletResponse response,
             @NonNull FilterChain filterChain) throws ServletException, IOException {
+        long decisionStartNanos = System.nanoTime();
         String host = request.getServerName();
         if (host == null) {
             filterChain.doFilter(request, response);
@@ -64,35 +67,14 @@ public class AbraRoutingFilter extends OncePerRequestFilter {
             path = "";
         }
 
-        DomainModel domain = domainModelService
-                .findActiveByDomainHost(host)
-                .orElse(null);
+        DomainRoute domain = routingTable.current().findDomain(host);
 
         if (domain != null) {
-            String domainId = domain.getDomain_id();
-            if (domainId == null) {
-                filterChain.doFilter(request, response);
-                return;
-            }
-
-            TestModel matchedTest = testModelService
-                    .findBestMatchingTest(domainId, path)
-                    .orElse(null);
+            TestRoute matchedTest = domain.findBestMatchingTest(path);
 
             if (matchedTest != null) {
-                String testId = matchedTest.getTest_id();
-                if (testId == null) {
-                    filterChain.doFilter(request, response);
-                    return;
-                }
-
-                List<VariantModel> variants = variantModelService.findAllVariantsByTestId(
-                        testId);
-
-                // Filter only active variants
-                List<VariantModel> activeVariants = variants.stream()
-                        .filter(VariantModel::isActive)
-                        .toList();
+                // Snapshot only holds active variants
+                List<VariantRoute> activeVariants = matchedTest.getVariants();
 
                 if (activeVariants.isEmpty()) {
                     log.warn("No active variants for test: {}", matchedTest.getName());
@@ -100,20 +82,12 @@ public class AbraRoutingFilter extends OncePerRequestFilter {
                     return;
                 }
 
-                // Step 1: Check for existing variant cookie or choose new variant
-                String cookieName = VARIANT_COOKIE_PREFIX + matchedTest.getTest_id();
-                VariantModel selectedVariant = getVariantFromCookie(request, cookieName, activeVariants)
-                        .orElseGet(() -> {
-                            // No valid cookie, choose variant randomly based on weights
-                            VariantModel newVariant = chooseVariant(activeVariants);
-                            // Set cookie to persist variant selection for 30 days
-                            setVariantCookie(response, cookieName, newVariant.getVariant_id());
-                            return newVariant;
-                        });
-
-                // Step 2: Select a healthy endpoint using round-robin load balancing
-                EndpointModel selectedEndpoint = endpointService.selectEndpoint(
-                        selectedVariant.getVariant_id());
+                // Step 1: Check for existing assignment (hash bucket or cookie) or choose new variant
+                Assignment assignment = variantAssigner.assign(request, response, matchedTest);
+                VariantRoute selectedVariant = assignment.variant();
+
+                // Step 2: Select a healthy endpoint using the variant's load balancing strategy
+                EndpointRoute selectedEndpoint = endpointService.selectEndpoint(selectedVariant);
 
                 if (selectedEndpoint == null) {
                     log.warn("No healthy endpoints available for variant: {}", selectedVariant.getName());
@@ -121,40 +95,51 @@ public class AbraRoutingFilter extends OncePerRequestFilter {
                     return;
                 }
 
+                long decisionNanos = System.nanoTime() - decisionStartNanos;
+                routingMetrics.recordDecision(domain, matchedTest, selectedVariant, selectedEndpoint);
+                latencyMetrics.recordDecision(selectedVariant, decisionNanos);
+                decisionLog.append(domain, path, matchedTest, selectedVariant, selectedEndpoint, decisionNanos);
+                exposureEvents.publish(matchedTest, selectedVariant, selectedEndpoint, assignment.source(),
+                        assignment.visitorKey());
+
                 // Build the target URL preserving the path and query string
                 String targetUrl = buildTargetUrl(selectedEndpoint.getUrl(), path, request.getQueryString());
 
-                log.info("Routing request: domain={}, path={}, test={}, variant={}, endpoint={}",
-                        domain.getHost(), path, matchedTest.getName(),
-                        selectedVariant.getName(), selectedEndpoint.getUrl());
+                // With the decision log enabled it records every decision and the per-request text
+                // log is for debugging only; without it, the text log is the record of decisions
+                if (!decisionLog.isEnabled()) {
+                    log.info("Routing request: domain={}, path={}, test={}, variant={}, endpoint={}, mode={}",
+                            domain.getHost(), path, matchedTest.getName(),
+                            selectedVariant.getName(), selectedEndpoint.getUrl(), domain.getRoutingMode());
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Routing request: domain={}, path={}, test={}, variant={}, endpoint={}, mode={}",
+                            domain.getHost(), path, matchedTest.getName(),
+                            selectedVariant.getName(), selectedEndpoint.getUrl(), domain.getRoutingMode());
+                }
 
-                // Redirect to the selected endpoint
-                response.sendRedirect(targetUrl);
+                if (domain.getRoutingMode() == RoutingMode.PROXY) {
+                    // Forward to the selected endpoint and stream the response back, tracking
+                    // in-flight requests, latency and failures for balancing and outlier ejection
+                    endpointService.onRequestStart(selectedEndpoint);
+                    long startNanos = System.nanoTime();
+                    int status = 0;
+                    try {
+                        status = upstreamProxy.forward(request, response, selectedEndpoint.getUrl(), targetUrl);
+                    } finally {
+                        long latencyNanos = System.nanoTime() - startNanos;
+                        endpointService.onRequestComplete(selectedEndpoint, latencyNanos, status);
+                        latencyMetrics.recordUpstream(selectedVariant, selectedEndpoint, latencyNanos);
+                    }
+                } else {
+                    // Redirect to the selected endpoint
+                    response.sendRedirect(targetUrl);
+                }
                 return;
             }
         }
         filterChain.doFilter(request, response);
     }
 
-    private VariantModel chooseVariant(List<VariantModel> variants) {
-        int weightSum = variants
-                .stream()
-                .mapToInt(VariantModel::getWeight)
-                .sum();
-
-        int random = ThreadLocalRandom.current().nextInt(weightSum);
-
-        int cumulativeWeight = 0;
-        for (VariantModel variant : variants) {
-            cumulativeWeight += variant.getWeight();
-            if (random < cumulativeWeight) {
-                return variant;
-            }
-        }
-
-        return variants.get(0);
-    }
-
     private String buildTargetUrl(String baseUrl, String path, String queryString) {
         StringBuilder targetUrl = new StringBuilder(baseUrl);
 
@@ -173,40 +158,4 @@ public class AbraRoutingFilter extends OncePerRequestFilter {
 
         return targetUrl.toString();
     }
-
-    /**
-     * Try to get the variant from cookie if it exists and is still valid (active)
-     */
-    private Optional<VariantModel> getVariantFromCookie(
-            HttpServletRequest request,
-            String cookieName,
-            List<VariantModel> activeVariants) {
-        Cookie[] cookies = request.getCookies();
-        if (cookies == null) {
-            return Optional.empty();
-        }
-
-        return Arrays.stream(cookies)
-                .filter(cookie -> cookieName.equals(cookie.getName()))
-                .findFirst()
-                .flatMap(cookie -> {
-                    String variantId = cookie.getValue();
-                    // Find the variant if it's still active
-                    return activeVariants.stream()
-                            .filter(v -> v.getVariant_id().equals(variantId))
-                            .findFirst();
-                });
-    }
-
-    /**
-     * Set a cookie to persist the variant selection for 30 days
-     */
-    private void setVariantCookie(HttpServletResponse response, String cookieName, String variantId) {
-        Cookie cookie = new Cookie(cookieName, variantId);
-        cookie.setMaxAge(COOKIE_MAX_AGE_SECONDS);
-        cookie.setPath("/");
-        cookie.setHttpOnly(true);
-        response.addCookie(cookie);
-        log.debug("Set variant cookie: {}={}", cookieName, variantId);
-    }
 }
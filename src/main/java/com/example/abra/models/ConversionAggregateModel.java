@@ -0,0 +1,43 @@
+package com.example.abra.models;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Conversions of one variant received by one node during one flush interval.
+ * Rows are written in batches by {@link com.example.abra.services.ConversionAggregator}
+ * through JDBC; totals are the sum over all rows of a variant.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity(name = "conversion_aggregate")
+@Table(indexes = @Index(name = "conversion_aggregate_test", columnList = "test_id, variant_id"))
+public class ConversionAggregateModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "flushed_at", nullable = false)
+    private Instant flushedAt;
+
+    @Column(name = "test_id", length = 50, nullable = false)
+    private String testId;
+
+    @Column(name = "variant_id", length = 50, nullable = false)
+    private String variantId;
+
+    @Column(name = "conversions", nullable = false)
+    private long conversions;
+
+    @Column(name = "value_sum", nullable = false)
+    private double valueSum;
+
+    @Column(name = "value_sum_of_squares", nullable = false)
+    private double valueSumOfSquares;
+}
@@ -23,6 +23,10 @@ public class DomainModel {
     @Column(name = "host", unique = true)
     private String host;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "routing_mode", length = 20)
+    private RoutingMode routingMode;
+
     @OneToMany(
         mappedBy = "domainModel",
         cascade = CascadeType.ALL,
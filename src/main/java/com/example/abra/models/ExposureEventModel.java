@@ -0,0 +1,50 @@
+package com.example.abra.models;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One routed request: which variant and endpoint a visitor was exposed to, and when.
+ * Rows are written in batches by {@link com.example.abra.services.ExposureEventPipeline}
+ * through JDBC; the entity only defines the table.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity(name = "exposure_event")
+@Table(indexes = @Index(name = "exposure_event_test_time", columnList = "test_id, occurred_at"))
+public class ExposureEventModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "occurred_at", nullable = false)
+    private Instant occurredAt;
+
+    @Column(name = "test_id", length = 50, nullable = false)
+    private String testId;
+
+    @Column(name = "variant_id", length = 50, nullable = false)
+    private String variantId;
+
+    @Column(name = "endpoint_url", length = 50)
+    private String endpointUrl;
+
+    /**
+     * Name of the {@link com.example.abra.routing.AssignmentSource} of the variant; null for
+     * rows written before it was recorded.
+     */
+    @Column(name = "assignment", length = 10)
+    private String assignment;
+
+    /**
+     * Hex SHA-256 of the visitor key, null if the request carried none.
+     */
+    @Column(name = "visitor_hash", length = 64)
+    private String visitorHash;
+}
@@ -0,0 +1,27 @@
+package com.example.abra.models;
+
+/**
+ * How the gateway picks one of a variant's healthy endpoints.
+ * <p>
+ * In-flight counts and latencies are only observed for domains in
+ * {@link RoutingMode#PROXY}; with redirects the load-aware strategies
+ * see idle endpoints and spread requests evenly.
+ */
+public enum LoadBalancingStrategy {
+    /**
+     * Rotate through the endpoints in order.
+     */
+    ROUND_ROBIN,
+    /**
+     * Pick the endpoint with the fewest requests currently in flight.
+     */
+    LEAST_OUTSTANDING,
+    /**
+     * Sample two endpoints at random and pick the one with fewer requests in flight.
+     */
+    POWER_OF_TWO_CHOICES,
+    /**
+     * Pick the endpoint with the lowest moving-average latency, weighted by its in-flight requests.
+     */
+    EWMA_LATENCY
+}
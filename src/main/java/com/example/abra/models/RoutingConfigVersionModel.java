@@ -0,0 +1,24 @@
+package com.example.abra.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Single-row counter bumped in the same transaction as every routing configuration write,
+ * so gateway replicas can detect changes made through another node's admin API.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity(name = "routing_config_version")
+public class RoutingConfigVersionModel {
+
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "config_version", nullable = false)
+    private long configVersion;
+}
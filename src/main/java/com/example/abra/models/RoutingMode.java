@@ -0,0 +1,15 @@
+package com.example.abra.models;
+
+/**
+ * How the gateway hands a routed request over to the selected endpoint.
+ */
+public enum RoutingMode {
+    /**
+     * Answer with a 302 redirect to the endpoint URL.
+     */
+    REDIRECT,
+    /**
+     * Forward the request to the endpoint and stream the response back to the client.
+     */
+    PROXY
+}
@@ -34,6 +34,10 @@ public class VariantModel {
     @Column(name = "weight")
     private int weight;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "load_balancing", length = 30)
+    private LoadBalancingStrategy loadBalancing;
+
     @ManyToOne
     @JoinColumn(name = "test_id")
     @JsonIgnoreProperties({ "variantModels", "domainModel" })
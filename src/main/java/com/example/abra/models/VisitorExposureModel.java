@@ -0,0 +1,41 @@
+package com.example.abra.models;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * First exposure of a visitor to a test: one row per new variant assignment, and one per
+ * visitor key hash in HASH mode, kept unique by the {@code (test_id, visitor_hash)} constraint.
+ * Rows are written by {@link com.example.abra.services.ExposureEventPipeline} through JDBC.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+@Entity(name = "visitor_exposure")
+@Table(uniqueConstraints = @UniqueConstraint(name = "visitor_exposure_visitor", columnNames = {"test_id", "visitor_hash"}))
+public class VisitorExposureModel {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id")
+    private Long id;
+
+    @Column(name = "first_seen_at", nullable = false)
+    private Instant firstSeenAt;
+
+    @Column(name = "test_id", length = 50, nullable = false)
+    private String testId;
+
+    @Column(name = "variant_id", length = 50, nullable = false)
+    private String variantId;
+
+    /**
+     * Hex SHA-256 of the visitor key of a HASH assignment; null for new cookie assignments,
+     * which are exposures by construction.
+     */
+    @Column(name = "visitor_hash", length = 64)
+    private String visitorHash;
+}
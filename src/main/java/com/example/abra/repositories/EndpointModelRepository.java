@@ -2,9 +2,12 @@ package com.example.abra.repositories;
 
 import com.example.abra.models.EndpointModel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -12,4 +15,11 @@ public interface EndpointModelRepository extends JpaRepository<EndpointModel, St
     
     @Query("SELECT e FROM endpoint e WHERE e.variantModel.variant_id = :variantId")
     List<EndpointModel> findByVariantId(String variantId);
+
+    @Query("SELECT e FROM endpoint e WHERE e.variantModel.variant_id IN :variantIds")
+    List<EndpointModel> findByVariantIdIn(@Param("variantIds") Collection<String> variantIds);
+
+    @Modifying
+    @Query("UPDATE endpoint e SET e.alive = :alive WHERE e.url IN :urls")
+    int updateAliveByUrlIn(@Param("alive") boolean alive, @Param("urls") Collection<String> urls);
 }
@@ -0,0 +1,32 @@
+package com.example.abra.repositories;
+
+import com.example.abra.models.RoutingConfigVersionModel;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface RoutingConfigVersionRepository
+    extends JpaRepository<RoutingConfigVersionModel, Integer> {
+    @Modifying
+    @Query(
+        "UPDATE routing_config_version v SET v.configVersion = v.configVersion + 1 WHERE v.id = :id"
+    )
+    int increment(@Param("id") Integer id);
+
+    @Transactional
+    @Modifying
+    @Query(
+        value = "INSERT INTO routing_config_version (id, config_version) SELECT :id, 0 "
+            + "WHERE NOT EXISTS (SELECT 1 FROM routing_config_version WHERE id = :id)",
+        nativeQuery = true
+    )
+    int insertIfAbsent(@Param("id") Integer id);
+
+    @Query("SELECT v.configVersion FROM routing_config_version v WHERE v.id = :id")
+    Optional<Long> findConfigVersion(@Param("id") Integer id);
+}
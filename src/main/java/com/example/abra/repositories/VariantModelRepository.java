@@ -1,6 +1,7 @@
 package com.example.abra.repositories;
 
 import com.example.abra.models.VariantModel;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -14,4 +15,11 @@ public interface VariantModelRepository
         "SELECT v FROM variant v WHERE v.testModel.test_id = :testId AND v.active = true"
     )
     List<VariantModel> findAllByTestId(@Param("testId") String testId);
+
+    @Query(
+        "SELECT v FROM variant v WHERE v.testModel.test_id IN :testIds AND v.active = true"
+    )
+    List<VariantModel> findAllByTestIdIn(
+        @Param("testIds") Collection<String> testIds
+    );
 }
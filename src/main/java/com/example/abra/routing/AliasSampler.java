@@ -0,0 +1,90 @@
+package com.example.abra.routing;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Weighted sampler using Vose's alias method.
+ * <p>
+ * The tables are built once from the weights in O(n); each sample then costs one random
+ * column pick and one biased coin flip, i.e. constant time and no allocation regardless
+ * of the number of outcomes. Negative weights are treated as zero, and if no weight is
+ * positive every outcome is equally likely.
+ */
+public final class AliasSampler {
+
+    private final double[] probability;
+    private final int[] alias;
+
+    public AliasSampler(int[] weights) {
+        this(Arrays.stream(weights).asDoubleStream().toArray());
+    }
+
+    public AliasSampler(double[] weights) {
+        int n = weights.length;
+        this.probability = new double[n];
+        this.alias = new int[n];
+        if (n == 0) {
+            return;
+        }
+
+        double total = 0;
+        for (double weight : weights) {
+            total += Math.max(weight, 0);
+        }
+
+        double[] scaled = new double[n];
+        for (int i = 0; i < n; i++) {
+            scaled[i] = total <= 0 ? 1.0 : Math.max(weights[i], 0) * n / total;
+        }
+
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+
+        // Whatever is left is 1.0 up to rounding error
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+    }
+
+    public int size() {
+        return probability.length;
+    }
+
+    /**
+     * Draw an outcome index in [0, size()) with probability proportional to its weight.
+     */
+    public int sample(RandomGenerator random) {
+        int column = random.nextInt(probability.length);
+        return random.nextDouble() < probability[column] ? column : alias[column];
+    }
+}
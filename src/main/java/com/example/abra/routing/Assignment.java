@@ -0,0 +1,9 @@
+package com.example.abra.routing;
+
+/**
+ * The variant chosen for a request and how it was determined.
+ *
+ * @param visitorKey the request's stable visitor key, or null if it does not carry one
+ */
+public record Assignment(VariantRoute variant, AssignmentSource source, String visitorKey) {
+}
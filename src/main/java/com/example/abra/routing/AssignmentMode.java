@@ -0,0 +1,17 @@
+package com.example.abra.routing;
+
+/**
+ * How new visitors are assigned to test variants.
+ */
+public enum AssignmentMode {
+    /**
+     * Weighted random choice, remembered in an {@code abra_variant_<testId>} cookie.
+     */
+    COOKIE,
+    /**
+     * Deterministic bucketing on a hash of the test ID and a stable visitor key.
+     * Needs no cookie and gives the same answer on every gateway node; requests
+     * without a visitor key fall back to {@link #COOKIE}.
+     */
+    HASH
+}
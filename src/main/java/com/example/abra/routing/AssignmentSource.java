@@ -0,0 +1,19 @@
+package com.example.abra.routing;
+
+/**
+ * How the variant of a request was determined.
+ */
+public enum AssignmentSource {
+    /**
+     * Weighted random choice for a visitor without a (valid) variant cookie.
+     */
+    NEW,
+    /**
+     * The variant remembered in the visitor's variant cookie.
+     */
+    COOKIE,
+    /**
+     * Deterministic bucket of the visitor key in {@link AssignmentMode#HASH} mode.
+     */
+    HASH
+}
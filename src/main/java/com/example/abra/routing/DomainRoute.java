@@ -0,0 +1,43 @@
+package com.example.abra.routing;
+
+import com.example.abra.models.RoutingMode;
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Immutable routing view of an active {@link com.example.abra.models.DomainModel}
+ * and its active tests, indexed by subpath in a {@link PathTrie}.
+ */
+@Getter
+public final class DomainRoute {
+
+    private final String domainId;
+    private final String host;
+    private final RoutingMode routingMode;
+    private final List<TestRoute> tests;
+    @Getter(AccessLevel.NONE)
+    private final PathTrie<TestRoute> testsBySubpath = new PathTrie<>();
+
+    public DomainRoute(String domainId, String host, RoutingMode routingMode, List<TestRoute> tests) {
+        this.domainId = domainId;
+        this.host = host;
+        this.routingMode = routingMode == null ? RoutingMode.REDIRECT : routingMode;
+        this.tests = List.copyOf(tests);
+        this.tests.forEach(test -> testsBySubpath.put(test.getSubpath(), test));
+    }
+
+    /**
+     * Finds the best matching test for a request path.
+     * Prioritizes more specific paths:
+     * 1. Exact match has highest priority
+     * 2. Longest prefix match if no exact match
+     * 3. "/" matches any non-empty path
+     *
+     * @param requestPath The requested path (e.g., "/cart/details")
+     * @return the best matching test, or null if no test matches
+     */
+    public TestRoute findBestMatchingTest(String requestPath) {
+        return testsBySubpath.find(requestPath);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.abra.routing;
+
+import lombok.Getter;
+
+/**
+ * Immutable routing view of a single {@link com.example.abra.models.EndpointModel}.
+ */
+@Getter
+public final class EndpointRoute {
+
+    private final String url;
+    private final boolean active;
+    private final boolean alive;
+
+    public EndpointRoute(String url, boolean active, boolean alive) {
+        this.url = url;
+        this.active = active;
+        this.alive = alive;
+    }
+}
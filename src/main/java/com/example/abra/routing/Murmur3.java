@@ -0,0 +1,77 @@
+package com.example.abra.routing;
+
+/**
+ * MurmurHash3 (x86, 32-bit) over UTF-16 code units, equivalent to hashing the
+ * little-endian UTF-16 bytes of the input.
+ * <p>
+ * Used for deterministic visitor bucketing, so the result must stay stable across
+ * releases and be identical on every gateway node.
+ */
+public final class Murmur3 {
+
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+    private static final int NO_SEPARATOR = -1;
+
+    private Murmur3() {
+    }
+
+    public static int hash32(String input, int seed) {
+        return hashChars(input, NO_SEPARATOR, "", seed);
+    }
+
+    /**
+     * Hash of {@code first + separator + second} without building the concatenated string.
+     */
+    public static int hash32(String first, char separator, String second, int seed) {
+        return hashChars(first, separator, second, seed);
+    }
+
+    private static int hashChars(String first, int separator, String second, int seed) {
+        int length = first.length() + (separator == NO_SEPARATOR ? 0 : 1) + second.length();
+        int h1 = seed;
+
+        for (int i = 1; i < length; i += 2) {
+            int k1 = charAt(first, separator, second, i - 1) | (charAt(first, separator, second, i) << 16);
+            h1 = mixH1(h1, mixK1(k1));
+        }
+        if ((length & 1) == 1) {
+            h1 ^= mixK1(charAt(first, separator, second, length - 1));
+        }
+        return fmix(h1, 2 * length);
+    }
+
+    private static int charAt(String first, int separator, String second, int index) {
+        int firstLength = first.length();
+        if (index < firstLength) {
+            return first.charAt(index);
+        }
+        if (separator == NO_SEPARATOR) {
+            return second.charAt(index - firstLength);
+        }
+        return index == firstLength ? separator : second.charAt(index - firstLength - 1);
+    }
+
+    private static int mixK1(int k1) {
+        k1 *= C1;
+        k1 = Integer.rotateLeft(k1, 15);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static int mixH1(int h1, int k1) {
+        h1 ^= k1;
+        h1 = Integer.rotateLeft(h1, 13);
+        return h1 * 5 + 0xe6546b64;
+    }
+
+    private static int fmix(int h1, int length) {
+        h1 ^= length;
+        h1 ^= h1 >>> 16;
+        h1 *= 0x85ebca6b;
+        h1 ^= h1 >>> 13;
+        h1 *= 0xc2b2ae35;
+        h1 ^= h1 >>> 16;
+        return h1;
+    }
+}
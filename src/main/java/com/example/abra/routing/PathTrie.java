@@ -0,0 +1,158 @@
+package com.example.abra.routing;
+
+import java.util.Arrays;
+
+/**
+ * Segment-based prefix trie used to find the test matching a request path.
+ * <p>
+ * Subpaths are split on {@code /} and stored one segment per level. A lookup walks the
+ * request path once, comparing each segment in place against the sorted children of the
+ * current node, so it costs O(path depth) and allocates nothing.
+ * <p>
+ * Matching rules are the same as the original linear scan:
+ * <ol>
+ *     <li>a subpath matches when the path equals it or continues with {@code /} after it,</li>
+ *     <li>the longest (deepest) matching subpath wins,</li>
+ *     <li>the subpath {@code /} matches every non-empty path that nothing else matches.</li>
+ * </ol>
+ * If several values are registered for the same subpath, the first one is kept.
+ * Instances are filled once while building a routing snapshot and are read-only afterwards.
+ */
+public final class PathTrie<T> {
+
+    private final Node<T> root = new Node<>();
+    private T fallback;
+
+    /**
+     * Register a value for the given subpath. Null and empty subpaths never match and are ignored.
+     */
+    public void put(String subpath, T value) {
+        if (subpath == null || subpath.isEmpty()) {
+            return;
+        }
+        if (subpath.equals("/")) {
+            if (fallback == null) {
+                fallback = value;
+            }
+            return;
+        }
+
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(subpath, start);
+            node = node.getOrCreateChild(subpath.substring(start, end));
+            if (end == subpath.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        if (node.value == null) {
+            node.value = value;
+        }
+    }
+
+    /**
+     * Find the value registered for the longest subpath matching the request path.
+     *
+     * @return the matching value, or null if nothing matches
+     */
+    public T find(String path) {
+        T best = null;
+        Node<T> node = root;
+        int start = 0;
+        while (true) {
+            int end = segmentEnd(path, start);
+            node = node.findChild(path, start, end);
+            if (node == null) {
+                break;
+            }
+            if (node.value != null) {
+                best = node.value;
+            }
+            if (end == path.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+
+        if (best == null && !path.isEmpty()) {
+            return fallback;
+        }
+        return best;
+    }
+
+    private static int segmentEnd(String path, int start) {
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.length() : end;
+    }
+
+    private static final class Node<T> {
+
+        private static final String[] NO_SEGMENTS = new String[0];
+
+        private String[] segments = NO_SEGMENTS;
+        @SuppressWarnings("unchecked")
+        private Node<T>[] children = new Node[0];
+        private T value;
+
+        Node<T> findChild(String path, int start, int end) {
+            int low = 0;
+            int high = segments.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(segments[mid], path, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+
+        Node<T> getOrCreateChild(String segment) {
+            int index = Arrays.binarySearch(segments, segment, PathTrie::compareSegments);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            int insertAt = -index - 1;
+            Node<T> child = new Node<>();
+            segments = insert(segments, insertAt, segment);
+            children = insert(children, insertAt, child);
+            return child;
+        }
+
+        private static <E> E[] insert(E[] array, int index, E element) {
+            E[] result = Arrays.copyOf(array, array.length + 1);
+            System.arraycopy(array, index, result, index + 1, array.length - index);
+            result[index] = element;
+            return result;
+        }
+    }
+
+    private static int compareSegments(String a, String b) {
+        return compare(a, b, 0, b.length());
+    }
+
+    /**
+     * Compare a stored segment with the region [start, end) of the path, char by char,
+     * using the same ordering as {@link String#compareTo}.
+     */
+    private static int compare(String segment, String path, int start, int end) {
+        int segmentLength = segment.length();
+        int regionLength = end - start;
+        int limit = Math.min(segmentLength, regionLength);
+        for (int i = 0; i < limit; i++) {
+            char a = segment.charAt(i);
+            char b = path.charAt(start + i);
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return segmentLength - regionLength;
+    }
+}
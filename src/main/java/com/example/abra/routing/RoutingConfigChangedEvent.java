@@ -0,0 +1,43 @@
+package com.example.abra.routing;
+
+import java.util.Collection;
+import java.util.Set;
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Published whenever routing configuration (domains, tests, variants, endpoints
+ * or endpoint health) has changed and the in-memory {@link RoutingTable} must be updated.
+ * <p>
+ * Scoped events name the changed entities so only the domains owning them are rebuilt;
+ * an event without an entity type rebuilds the whole table.
+ */
+@Getter
+public class RoutingConfigChangedEvent extends ApplicationEvent {
+
+    private final RoutingEntityType entityType;
+    private final Set<String> entityIds;
+
+    public RoutingConfigChangedEvent(Object source) {
+        super(source);
+        this.entityType = null;
+        this.entityIds = Set.of();
+    }
+
+    /**
+     * Event for a single entity; an unknown (null) ID falls back to a full reload.
+     */
+    public RoutingConfigChangedEvent(Object source, RoutingEntityType entityType, String entityId) {
+        this(source, entityId == null ? null : entityType, entityId == null ? Set.of() : Set.of(entityId));
+    }
+
+    public RoutingConfigChangedEvent(Object source, RoutingEntityType entityType, Collection<String> entityIds) {
+        super(source);
+        this.entityType = entityType;
+        this.entityIds = Set.copyOf(entityIds);
+    }
+
+    public boolean isFullReload() {
+        return entityType == null;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.abra.routing;
+
+/**
+ * Kind of configuration entity a {@link RoutingConfigChangedEvent} refers to.
+ */
+public enum RoutingEntityType {
+    DOMAIN,
+    TEST,
+    VARIANT,
+    ENDPOINT
+}
@@ -0,0 +1,117 @@
+package com.example.abra.routing;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Immutable, versioned view of the whole routing configuration
+ * (host -> domain -> tests -> variants -> endpoints).
+ * <p>
+ * A new snapshot is built whenever the configuration changes and swapped in
+ * atomically by {@link RoutingTable}, so request routing never touches the database.
+ * The snapshot also records which domain owns each test, variant and endpoint, so a
+ * change to one entity can be applied by rebuilding only that domain.
+ * <p>
+ * {@code version} counts local swaps; {@code configVersion} is the cluster-wide
+ * routing config version (see {@code RoutingConfigVersionService}) the snapshot reflects.
+ */
+@Getter
+public final class RoutingSnapshot {
+
+    private static final RoutingSnapshot EMPTY = new RoutingSnapshot(0, 0, Map.of());
+
+    private final long version;
+    private final long configVersion;
+    private final Map<String, DomainRoute> domainsByHost;
+    @Getter(AccessLevel.NONE)
+    private final Map<String, DomainRoute> domainsById;
+    @Getter(AccessLevel.NONE)
+    private final Map<RoutingEntityType, Map<String, String>> owningDomainIds;
+
+    public RoutingSnapshot(long version, long configVersion, Map<String, DomainRoute> domainsByHost) {
+        this.version = version;
+        this.configVersion = configVersion;
+        this.domainsByHost = Map.copyOf(domainsByHost);
+
+        Map<String, DomainRoute> byId = new HashMap<>();
+        Map<String, String> testOwners = new HashMap<>();
+        Map<String, String> variantOwners = new HashMap<>();
+        Map<String, String> endpointOwners = new HashMap<>();
+        for (DomainRoute domain : this.domainsByHost.values()) {
+            String domainId = domain.getDomainId();
+            byId.put(domainId, domain);
+            for (TestRoute test : domain.getTests()) {
+                testOwners.put(test.getTestId(), domainId);
+                for (VariantRoute variant : test.getVariants()) {
+                    variantOwners.put(variant.getVariantId(), domainId);
+                    for (EndpointRoute endpoint : variant.getEndpoints()) {
+                        endpointOwners.put(endpoint.getUrl(), domainId);
+                    }
+                }
+            }
+        }
+        this.domainsById = Map.copyOf(byId);
+        this.owningDomainIds = Map.of(
+            RoutingEntityType.TEST, Map.copyOf(testOwners),
+            RoutingEntityType.VARIANT, Map.copyOf(variantOwners),
+            RoutingEntityType.ENDPOINT, Map.copyOf(endpointOwners));
+    }
+
+    private RoutingSnapshot(RoutingSnapshot source, long configVersion) {
+        this.version = source.version;
+        this.configVersion = configVersion;
+        this.domainsByHost = source.domainsByHost;
+        this.domainsById = source.domainsById;
+        this.owningDomainIds = source.owningDomainIds;
+    }
+
+    /**
+     * Same routes, marked as reflecting the given config version.
+     */
+    public RoutingSnapshot withConfigVersion(long configVersion) {
+        return new RoutingSnapshot(this, configVersion);
+    }
+
+    public static RoutingSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Find the active domain configured for the given host.
+     */
+    public DomainRoute findDomain(String host) {
+        return domainsByHost.get(host);
+    }
+
+    public DomainRoute findDomainById(String domainId) {
+        return domainsById.get(domainId);
+    }
+
+    /**
+     * Find an active test by its ID.
+     */
+    public TestRoute findTest(String testId) {
+        String domainId = testId == null ? null : findOwningDomainId(RoutingEntityType.TEST, testId);
+        if (domainId == null) {
+            return null;
+        }
+        for (TestRoute test : domainsById.get(domainId).getTests()) {
+            if (test.getTestId().equals(testId)) {
+                return test;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * ID of the domain that currently routes through the given entity, or null if it is not part of this snapshot.
+     */
+    public String findOwningDomainId(RoutingEntityType type, String entityId) {
+        if (type == RoutingEntityType.DOMAIN) {
+            return domainsById.containsKey(entityId) ? entityId : null;
+        }
+        return owningDomainIds.get(type).get(entityId);
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.abra.routing;
+
+import com.example.abra.models.DomainModel;
+import com.example.abra.models.EndpointModel;
+import com.example.abra.models.TestModel;
+import com.example.abra.models.VariantModel;
+import com.example.abra.repositories.DomainModelRepository;
+import com.example.abra.repositories.EndpointModelRepository;
+import com.example.abra.repositories.TestModelRepository;
+import com.example.abra.repositories.VariantModelRepository;
+import com.example.abra.services.RoutingConfigVersionService;
+import jakarta.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Builds {@link RoutingSnapshot}s and single {@link DomainRoute}s from the database.
+ * <p>
+ * Every table is read once with a flat query and the tree is assembled in memory,
+ * so a rebuild costs a fixed number of queries regardless of how many tests exist.
+ */
+@Component
+@RequiredArgsConstructor
+public class RoutingSnapshotLoader {
+
+    private final DomainModelRepository domainModelRepository;
+    private final TestModelRepository testModelRepository;
+    private final VariantModelRepository variantModelRepository;
+    private final EndpointModelRepository endpointModelRepository;
+    private final RoutingConfigVersionService routingConfigVersionService;
+
+    /**
+     * Load the full routing configuration. The config version is read first, so a change
+     * committed while loading can only make the snapshot look older than it is, never newer.
+     */
+    @Transactional
+    public RoutingSnapshot load(long version) {
+        long configVersion = routingConfigVersionService.currentVersion();
+        return new RoutingSnapshot(version, configVersion, assemble(
+            domainModelRepository.findAll(),
+            testModelRepository.findAll(),
+            variantModelRepository.findAll(),
+            endpointModelRepository.findAll()));
+    }
+
+    /**
+     * Load the routing subtree of one domain.
+     *
+     * @return the domain route, or empty if the domain no longer exists or is inactive
+     */
+    @Transactional
+    public Optional<DomainRoute> loadDomain(String domainId) {
+        Optional<DomainModel> domain = domainModelRepository.findById(domainId);
+        if (domain.isEmpty() || !domain.get().isActive()) {
+            return Optional.empty();
+        }
+
+        List<TestModel> tests = testModelRepository.findAllByDomainIdAndIsActiveTrue(domainId);
+        List<String> testIds = tests.stream().map(TestModel::getTest_id).toList();
+        List<VariantModel> variants = testIds.isEmpty()
+            ? List.of()
+            : variantModelRepository.findAllByTestIdIn(testIds);
+        List<String> variantIds = variants.stream().map(VariantModel::getVariant_id).toList();
+        List<EndpointModel> endpoints = variantIds.isEmpty()
+            ? List.of()
+            : endpointModelRepository.findByVariantIdIn(variantIds);
+
+        return assemble(List.of(domain.get()), tests, variants, endpoints).values().stream().findFirst();
+    }
+
+    /**
+     * Look up which domain the given entity currently belongs to in the database.
+     *
+     * @return the owning domain ID, or empty if the entity does not exist or is not attached to a domain
+     */
+    @Transactional
+    public Optional<String> findOwningDomainId(RoutingEntityType type, String entityId) {
+        return switch (type) {
+            case DOMAIN -> Optional.of(entityId);
+            case TEST -> testModelRepository.findById(entityId)
+                .map(TestModel::getDomainModel)
+                .map(DomainModel::getDomain_id);
+            case VARIANT -> variantModelRepository.findById(entityId)
+                .map(VariantModel::getTestModel)
+                .map(TestModel::getDomainModel)
+                .map(DomainModel::getDomain_id);
+            case ENDPOINT -> endpointModelRepository.findById(entityId)
+                .map(EndpointModel::getVariantModel)
+                .map(VariantModel::getTestModel)
+                .map(TestModel::getDomainModel)
+                .map(DomainModel::getDomain_id);
+        };
+    }
+
+    private Map<String, DomainRoute> assemble(
+            List<DomainModel> domains,
+            List<TestModel> tests,
+            List<VariantModel> variants,
+            List<EndpointModel> endpoints) {
+        Map<String, List<EndpointRoute>> endpointsByVariant = new HashMap<>();
+        for (EndpointModel endpoint : endpoints) {
+            if (endpoint.getVariantModel() == null) {
+                continue;
+            }
+            endpointsByVariant
+                .computeIfAbsent(endpoint.getVariantModel().getVariant_id(), k -> new ArrayList<>())
+                .add(new EndpointRoute(endpoint.getUrl(), endpoint.isActive(), endpoint.isAlive()));
+        }
+
+        Map<String, List<VariantRoute>> variantsByTest = new HashMap<>();
+        for (VariantModel variant : variants) {
+            if (!variant.isActive() || variant.getTestModel() == null) {
+                continue;
+            }
+            variantsByTest
+                .computeIfAbsent(variant.getTestModel().getTest_id(), k -> new ArrayList<>())
+                .add(new VariantRoute(
+                    variant.getVariant_id(),
+                    variant.getName(),
+                    variant.getWeight(),
+                    variant.getLoadBalancing(),
+                    endpointsByVariant.getOrDefault(variant.getVariant_id(), List.of())));
+        }
+
+        Map<String, List<TestRoute>> testsByDomain = new HashMap<>();
+        for (TestModel test : tests) {
+            if (!test.isActive() || test.getDomainModel() == null) {
+                continue;
+            }
+            testsByDomain
+                .computeIfAbsent(test.getDomainModel().getDomain_id(), k -> new ArrayList<>())
+                .add(new TestRoute(
+                    test.getTest_id(),
+                    test.getName(),
+                    test.getSubpath(),
+                    variantsByTest.getOrDefault(test.getTest_id(), List.of())));
+        }
+
+        Map<String, DomainRoute> domainsByHost = new HashMap<>();
+        for (DomainModel domain : domains) {
+            if (!domain.isActive() || domain.getHost() == null) {
+                continue;
+            }
+            domainsByHost.put(domain.getHost(), new DomainRoute(
+                domain.getDomain_id(),
+                domain.getHost(),
+                domain.getRoutingMode(),
+                testsByDomain.getOrDefault(domain.getDomain_id(), List.of())));
+        }
+        return domainsByHost;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.abra.routing;
+
+import com.example.abra.services.RoutingConfigVersionService;
+import jakarta.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the current {@link RoutingSnapshot} used by the routing filter.
+ * <p>
+ * Readers only dereference an atomic reference. Updates happen off the request path
+ * whenever a {@link RoutingConfigChangedEvent} is published: scoped events rebuild only
+ * the domains that own the changed entities (before and after the change), unscoped
+ * events rebuild the whole table. Either way the new snapshot replaces the old one in one step.
+ * <p>
+ * Events are only published on the node that served the admin request. To pick up changes
+ * made through other nodes, the table polls the shared routing config version and does a
+ * full reload whenever it advanced by a write this node did not make itself.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RoutingTable {
+
+    private final RoutingSnapshotLoader routingSnapshotLoader;
+    private final RoutingConfigVersionService routingConfigVersionService;
+
+    private final AtomicReference<RoutingSnapshot> current =
+        new AtomicReference<>(RoutingSnapshot.empty());
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    public RoutingSnapshot current() {
+        return current.get();
+    }
+
+    /**
+     * Runs before any other listener of the event, so they all see the updated snapshot.
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onRoutingConfigChanged(RoutingConfigChangedEvent event) {
+        if (event.isFullReload()) {
+            reload();
+        } else {
+            invalidate(event.getEntityType(), event.getEntityIds());
+        }
+    }
+
+    /**
+     * Rebuild the snapshot from the database and publish it atomically.
+     * Updates are serialized so an older snapshot can never replace a newer one.
+     */
+    public void reload() {
+        reloadLock.lock();
+        try {
+            RoutingSnapshot snapshot = routingSnapshotLoader.load(current.get().getVersion() + 1);
+            current.set(snapshot);
+            routingConfigVersionService.discardLocalVersionsUpTo(snapshot.getConfigVersion());
+            log.info("Routing table reloaded: version={}, configVersion={}, domains={}",
+                snapshot.getVersion(), snapshot.getConfigVersion(), snapshot.getDomainsByHost().size());
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild only the domains affected by changes to the given entities.
+     * An entity may have moved between domains, so both its previous owner (from the
+     * current snapshot) and its new owner (from the database) are rebuilt.
+     */
+    public void invalidate(RoutingEntityType type, Set<String> entityIds) {
+        reloadLock.lock();
+        try {
+            RoutingSnapshot snapshot = current.get();
+            Set<String> affectedDomainIds = new LinkedHashSet<>();
+            for (String entityId : entityIds) {
+                String previousOwner = snapshot.findOwningDomainId(type, entityId);
+                if (previousOwner != null) {
+                    affectedDomainIds.add(previousOwner);
+                }
+                routingSnapshotLoader.findOwningDomainId(type, entityId).ifPresent(affectedDomainIds::add);
+            }
+            if (affectedDomainIds.isEmpty()) {
+                log.debug("Routing change to {} {} does not affect any active domain", type, entityIds);
+                return;
+            }
+
+            Map<String, DomainRoute> domainsByHost = new HashMap<>(snapshot.getDomainsByHost());
+            for (String domainId : affectedDomainIds) {
+                DomainRoute previous = snapshot.findDomainById(domainId);
+                if (previous != null) {
+                    domainsByHost.remove(previous.getHost());
+                }
+                routingSnapshotLoader.loadDomain(domainId)
+                    .ifPresent(domain -> domainsByHost.put(domain.getHost(), domain));
+            }
+
+            RoutingSnapshot updated = new RoutingSnapshot(
+                snapshot.getVersion() + 1, snapshot.getConfigVersion(), domainsByHost);
+            current.set(updated);
+            log.info("Routing table updated: version={}, {} {} changed, rebuilt domains={}",
+                updated.getVersion(), type, entityIds, affectedDomainIds);
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * Compare the shared config version with the one the current snapshot reflects.
+     * Versions committed by this node were already applied through change events;
+     * anything else means another node changed the configuration, so reload everything.
+     */
+    @Scheduled(fixedDelayString = "${abra.routing.config-poll-interval-ms:1000}")
+    public void pollConfigVersion() {
+        long latest = routingConfigVersionService.currentVersion();
+        if (latest == current.get().getConfigVersion()) {
+            return;
+        }
+
+        reloadLock.lock();
+        try {
+            RoutingSnapshot snapshot = current.get();
+            long applied = snapshot.getConfigVersion();
+            while (applied < latest && routingConfigVersionService.consumeLocalVersion(applied + 1)) {
+                applied++;
+            }
+            if (applied == latest) {
+                current.set(snapshot.withConfigVersion(applied));
+                return;
+            }
+            log.info("Routing config version {} differs from applied version {}, reloading",
+                latest, applied);
+            reload();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+}
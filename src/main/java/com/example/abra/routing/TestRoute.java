@@ -0,0 +1,134 @@
+package com.example.abra.routing;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Immutable routing view of an active {@link com.example.abra.models.TestModel}.
+ * Only active variants are kept, in the order they were loaded, together with an
+ * {@link AliasSampler} over their weights for random assignment and a cumulative
+ * bucket table for deterministic (hash-based) assignment.
+ * <p>
+ * The only mutable part is a cache of the variants' capacity-adjusted weights, tagged with
+ * the health registry epoch they were computed for.
+ */
+@Getter
+public final class TestRoute {
+
+    /**
+     * Number of hash buckets split between the variants proportionally to their weights.
+     */
+    public static final int BUCKETS = 10_000;
+
+    private final String testId;
+    private final String name;
+    private final String subpath;
+    private final List<VariantRoute> variants;
+    @Getter(AccessLevel.NONE)
+    private final AliasSampler variantSampler;
+    @Getter(AccessLevel.NONE)
+    private final int[] bucketUpperBounds;
+    @Setter
+    private volatile EffectiveWeights effectiveWeights;
+
+    public TestRoute(String testId, String name, String subpath, List<VariantRoute> variants) {
+        this.testId = testId;
+        this.name = name;
+        this.subpath = subpath;
+        this.variants = List.copyOf(variants);
+        this.variantSampler = new AliasSampler(
+            this.variants.stream().mapToInt(VariantRoute::getWeight).toArray());
+        this.bucketUpperBounds = buildBucketUpperBounds(this.variants);
+    }
+
+    /**
+     * Choose a variant at random, proportionally to the variant weights.
+     *
+     * @return the chosen variant, or null if the test has no active variants
+     */
+    public VariantRoute chooseVariant(RandomGenerator random) {
+        if (variants.isEmpty()) {
+            return null;
+        }
+        return variants.get(variantSampler.sample(random));
+    }
+
+    /**
+     * Choose a variant at random, proportionally to the given effective weights.
+     *
+     * @return the chosen variant, or null if the test has no active variants
+     */
+    public VariantRoute chooseVariant(RandomGenerator random, EffectiveWeights weights) {
+        if (variants.isEmpty()) {
+            return null;
+        }
+        return variants.get(weights.sampler().sample(random));
+    }
+
+    /**
+     * Find an active variant of this test by its ID.
+     */
+    public VariantRoute findVariant(String variantId) {
+        for (VariantRoute variant : variants) {
+            if (variant.getVariantId().equals(variantId)) {
+                return variant;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Map a bucket in [0, {@link #BUCKETS}) to a variant. Each variant owns a contiguous
+     * range of buckets sized by its weight, so changing one weight only moves the
+     * buckets at the edges of the affected ranges.
+     *
+     * @return the variant owning the bucket, or null if the test has no active variants
+     */
+    public VariantRoute variantForBucket(int bucket) {
+        if (variants.isEmpty()) {
+            return null;
+        }
+        // First variant whose upper bound is above the bucket
+        int low = 0;
+        int high = bucketUpperBounds.length - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (bucketUpperBounds[mid] > bucket) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return variants.get(low);
+    }
+
+    private static int[] buildBucketUpperBounds(List<VariantRoute> variants) {
+        int n = variants.size();
+        int[] bounds = new int[n];
+        long total = 0;
+        for (VariantRoute variant : variants) {
+            total += Math.max(variant.getWeight(), 0);
+        }
+
+        long cumulative = 0;
+        for (int i = 0; i < n; i++) {
+            cumulative += total == 0 ? 1 : Math.max(variants.get(i).getWeight(), 0);
+            bounds[i] = (int) (cumulative * BUCKETS / (total == 0 ? n : total));
+        }
+        return bounds;
+    }
+
+    /**
+     * Variant weights scaled by the share of each variant's endpoints that are alive, as of
+     * the given health registry epoch, in variant order.
+     */
+    public record EffectiveWeights(long epoch, double[] weights, AliasSampler sampler) {
+
+        public EffectiveWeights(long epoch, double[] weights) {
+            this(epoch, weights, new AliasSampler(weights));
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.abra.routing;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reverse proxy used by domains in {@link com.example.abra.models.RoutingMode#PROXY} mode.
+ * <p>
+ * Requests are forwarded with a shared {@link HttpClient}, which keeps a pool of keep-alive
+ * connections per upstream. Request and response bodies are streamed in both directions
+ * and never buffered in memory. When virtual threads are enabled
+ * ({@code spring.threads.virtual.enabled}) the client also runs its internal tasks on them.
+ * <p>
+ * {@code Location} and {@code Content-Location} response headers that point into the endpoint
+ * are rewritten to the host the client requested, so redirects keep the client on this proxy.
+ */
+@Slf4j
+@Component
+public class UpstreamProxy {
+
+    /**
+     * Hop-by-hop headers (RFC 9110, section 7.6.1) that must not be forwarded.
+     */
+    private static final Set<String> HOP_BY_HOP_HEADERS = Set.of(
+        "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+        "proxy-connection", "te", "trailer", "transfer-encoding", "upgrade");
+
+    /**
+     * Headers the HTTP client computes itself and does not allow to be set.
+     */
+    private static final Set<String> CLIENT_MANAGED_HEADERS = Set.of("content-length", "expect", "host");
+
+    /**
+     * Response headers holding a URL that is rewritten from the endpoint to the public host.
+     */
+    private static final Set<String> LOCATION_HEADERS = Set.of("location", "content-location");
+
+    private static final int BUFFER_BYTES = 8192;
+
+    @Value("${abra.proxy.connect-timeout-ms:2000}")
+    private long connectTimeoutMs;
+
+    @Value("${abra.proxy.response-timeout-ms:30000}")
+    private long responseTimeoutMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private HttpClient httpClient;
+
+    @PostConstruct
+    public void init() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+            .followRedirects(HttpClient.Redirect.NEVER);
+        if (virtualThreads) {
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        httpClient = builder.build();
+    }
+
+    /**
+     * Forward the request to the target URL on the given endpoint and stream the upstream response
+     * back to the client. Upstream connection failures are answered with 502 and timeouts with 504.
+     * If the upstream fails while its body is streamed, the response is already committed and is
+     * cut short; 502 is returned so the failure counts against the endpoint. A failure writing to
+     * the client is thrown.
+     *
+     * @param endpointUrl base URL of the endpoint the target URL is on
+     * @return the status code sent to the client, or 502 if the upstream body failed
+     */
+    public int forward(HttpServletRequest request, HttpServletResponse response, String endpointUrl,
+            String targetUrl) throws IOException {
+        HttpRequest.Builder upstreamRequest;
+        try {
+            upstreamRequest = HttpRequest.newBuilder(URI.create(targetUrl))
+                .timeout(Duration.ofMillis(responseTimeoutMs))
+                .method(request.getMethod(), bodyPublisher(request));
+        } catch (IllegalArgumentException e) {
+            log.debug("Cannot proxy malformed URL {}: {}", targetUrl, e.getMessage());
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return HttpServletResponse.SC_BAD_REQUEST;
+        }
+        copyRequestHeaders(request, upstreamRequest);
+
+        HttpResponse<InputStream> upstreamResponse;
+        try {
+            upstreamResponse = httpClient.send(upstreamRequest.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (HttpTimeoutException e) {
+            log.warn("Upstream {} timed out: {}", targetUrl, e.getMessage());
+            response.sendError(HttpServletResponse.SC_GATEWAY_TIMEOUT);
+            return HttpServletResponse.SC_GATEWAY_TIMEOUT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while proxying to " + targetUrl);
+        } catch (IOException e) {
+            log.warn("Upstream {} unavailable: {}", targetUrl, e.getMessage());
+            response.sendError(HttpServletResponse.SC_BAD_GATEWAY);
+            return HttpServletResponse.SC_BAD_GATEWAY;
+        }
+
+        response.setStatus(upstreamResponse.statusCode());
+        upstreamResponse.headers().map().forEach((name, values) -> {
+            String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (LOCATION_HEADERS.contains(lowerCaseName)) {
+                values.forEach(value -> response.addHeader(name, rewriteLocation(value, endpointUrl, request)));
+            } else if (!HOP_BY_HOP_HEADERS.contains(lowerCaseName)) {
+                values.forEach(value -> response.addHeader(name, value));
+            }
+        });
+        try (InputStream body = upstreamResponse.body()) {
+            OutputStream out = response.getOutputStream();
+            byte[] buffer = new byte[BUFFER_BYTES];
+            while (true) {
+                int read;
+                try {
+                    read = body.read(buffer);
+                } catch (IOException e) {
+                    log.warn("Upstream {} failed while sending the response body: {}", targetUrl, e.getMessage());
+                    return HttpServletResponse.SC_BAD_GATEWAY;
+                }
+                if (read < 0) {
+                    break;
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return upstreamResponse.statusCode();
+    }
+
+    /**
+     * Replace the endpoint base URL at the start of {@code location} with the scheme and host the
+     * client used; other locations are returned unchanged.
+     */
+    static String rewriteLocation(String location, String endpointUrl, HttpServletRequest request) {
+        String base = endpointUrl.endsWith("/") ? endpointUrl.substring(0, endpointUrl.length() - 1) : endpointUrl;
+        if (!location.regionMatches(true, 0, base, 0, base.length())) {
+            return location;
+        }
+        if (location.length() > base.length() && "/?#".indexOf(location.charAt(base.length())) < 0) {
+            return location;
+        }
+        String host = request.getHeader("Host");
+        if (host == null) {
+            host = request.getServerName() + ":" + request.getServerPort();
+        }
+        return request.getScheme() + "://" + host + location.substring(base.length());
+    }
+
+    private HttpRequest.BodyPublisher bodyPublisher(HttpServletRequest request) {
+        long contentLength = request.getContentLengthLong();
+        boolean chunked = request.getHeader("Transfer-Encoding") != null;
+        if (contentLength <= 0 && !chunked) {
+            return HttpRequest.BodyPublishers.noBody();
+        }
+
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(() -> {
+            try {
+                return request.getInputStream();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return contentLength > 0 ? HttpRequest.BodyPublishers.fromPublisher(stream, contentLength) : stream;
+    }
+
+    private void copyRequestHeaders(HttpServletRequest request, HttpRequest.Builder upstreamRequest) {
+        Enumeration<String> names = request.getHeaderNames();
+        while (names.hasMoreElements()) {
+            String name = names.nextElement();
+            String lowerCaseName = name.toLowerCase(Locale.ROOT);
+            if (HOP_BY_HOP_HEADERS.contains(lowerCaseName)
+                    || CLIENT_MANAGED_HEADERS.contains(lowerCaseName)
+                    || lowerCaseName.startsWith("x-forwarded-")) {
+                continue;
+            }
+            Enumeration<String> values = request.getHeaders(name);
+            while (values.hasMoreElements()) {
+                upstreamRequest.header(name, values.nextElement());
+            }
+        }
+
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        upstreamRequest.header("X-Forwarded-For", forwardedFor == null
+            ? request.getRemoteAddr()
+            : forwardedFor + ", " + request.getRemoteAddr());
+        String host = request.getHeader("Host");
+        if (host != null) {
+            upstreamRequest.header("X-Forwarded-Host", host);
+        }
+        upstreamRequest.header("X-Forwarded-Proto", request.getScheme());
+    }
+}
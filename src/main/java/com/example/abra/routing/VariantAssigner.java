@@ -0,0 +1,166 @@
+package com.example.abra.routing;
+
+import com.example.abra.services.EndpointService;
+import com.example.abra.services.RoutingMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides which variant of a test serves a request.
+ * <p>
+ * In {@link AssignmentMode#HASH} mode a visitor key (header, cookie or client IP) is hashed
+ * with the test ID into one of {@link TestRoute#BUCKETS} buckets, so assignment is stateless.
+ * Otherwise an existing variant cookie is honored, and new visitors are assigned at random
+ * by weight and get a cookie for 30 days.
+ * <p>
+ * With {@code abra.assignment.capacity-aware} the random assignment of new visitors uses the
+ * variants' {@link EndpointService#effectiveWeights capacity-adjusted weights}, so a variant
+ * whose endpoints are partly down receives proportionally fewer new visitors. Existing cookie
+ * and hash assignments are never moved.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class VariantAssigner {
+
+    public static final String VARIANT_COOKIE_PREFIX = "abra_variant_";
+    private static final int COOKIE_MAX_AGE_DAYS = 30;
+    private static final int COOKIE_MAX_AGE_SECONDS = COOKIE_MAX_AGE_DAYS * 24 * 60 * 60;
+    private static final int HASH_SEED = 0;
+
+    private static final String HEADER_KEY_PREFIX = "header:";
+    private static final String COOKIE_KEY_PREFIX = "cookie:";
+    private static final String CLIENT_IP_KEY = "client-ip";
+
+    private final RoutingMetrics routingMetrics;
+    private final EndpointService endpointService;
+
+    @Value("${abra.assignment.mode:COOKIE}")
+    private AssignmentMode mode;
+
+    @Value("${abra.assignment.hash-key:header:X-Abra-Visitor-Id}")
+    private String hashKey;
+
+    @Value("${abra.assignment.capacity-aware:false}")
+    private boolean capacityAware;
+
+    private String visitorHeader;
+    private String visitorCookie;
+
+    @PostConstruct
+    public void init() {
+        if (hashKey.startsWith(HEADER_KEY_PREFIX)) {
+            visitorHeader = hashKey.substring(HEADER_KEY_PREFIX.length());
+        } else if (hashKey.startsWith(COOKIE_KEY_PREFIX)) {
+            visitorCookie = hashKey.substring(COOKIE_KEY_PREFIX.length());
+        } else if (!hashKey.equals(CLIENT_IP_KEY)) {
+            throw new IllegalStateException(
+                "Invalid abra.assignment.hash-key '" + hashKey + "', expected header:<name>, cookie:<name> or client-ip");
+        }
+        log.info("Variant assignment mode: {} (visitor key: {}, capacity-aware: {})", mode, hashKey, capacityAware);
+    }
+
+    /**
+     * Pick the variant for this request, setting the variant cookie if a new random assignment was made.
+     * The test must have at least one active variant.
+     */
+    public Assignment assign(HttpServletRequest request, HttpServletResponse response, TestRoute test) {
+        String visitorKey = resolveVisitorKey(request);
+        if (mode == AssignmentMode.HASH && visitorKey != null) {
+            routingMetrics.recordAssignment(AssignmentSource.HASH);
+            VariantRoute hashed = test.variantForBucket(bucketOf(test.getTestId(), visitorKey));
+            return new Assignment(hashed, AssignmentSource.HASH, visitorKey);
+        }
+
+        // Check for existing variant cookie or choose new variant
+        String cookieName = VARIANT_COOKIE_PREFIX + test.getTestId();
+        VariantRoute fromCookie = getVariantFromCookie(request, cookieName, test);
+        if (fromCookie != null) {
+            routingMetrics.recordAssignment(AssignmentSource.COOKIE);
+            return new Assignment(fromCookie, AssignmentSource.COOKIE, visitorKey);
+        }
+
+        // No valid cookie, choose variant randomly based on weights
+        VariantRoute newVariant = capacityAware
+            ? test.chooseVariant(ThreadLocalRandom.current(), endpointService.effectiveWeights(test))
+            : test.chooseVariant(ThreadLocalRandom.current());
+        // Set cookie to persist variant selection for 30 days
+        setVariantCookie(response, cookieName, newVariant.getVariantId());
+        routingMetrics.recordAssignment(AssignmentSource.NEW);
+        return new Assignment(newVariant, AssignmentSource.NEW, visitorKey);
+    }
+
+    /**
+     * The variant a visitor key is assigned to in {@link AssignmentMode#HASH} mode, without a request.
+     *
+     * @return the variant, or null when not in HASH mode (the variant then only lives in the cookie)
+     */
+    public VariantRoute variantForVisitor(TestRoute test, String visitorKey) {
+        if (mode != AssignmentMode.HASH) {
+            return null;
+        }
+        return test.variantForBucket(bucketOf(test.getTestId(), visitorKey));
+    }
+
+    /**
+     * Deterministic bucket of a visitor within a test, identical on every node.
+     */
+    public static int bucketOf(String testId, String visitorKey) {
+        return Integer.remainderUnsigned(Murmur3.hash32(testId, ':', visitorKey, HASH_SEED), TestRoute.BUCKETS);
+    }
+
+    /**
+     * The configured stable visitor key of the request, or null if the request does not carry one.
+     */
+    public String resolveVisitorKey(HttpServletRequest request) {
+        String key;
+        if (visitorHeader != null) {
+            key = request.getHeader(visitorHeader);
+        } else if (visitorCookie != null) {
+            key = getCookieValue(request, visitorCookie);
+        } else {
+            key = request.getRemoteAddr();
+        }
+        return key == null || key.isEmpty() ? null : key;
+    }
+
+    /**
+     * Try to get the variant from cookie if it exists and is still valid (active)
+     */
+    private VariantRoute getVariantFromCookie(HttpServletRequest request, String cookieName, TestRoute test) {
+        String variantId = getCookieValue(request, cookieName);
+        return variantId == null ? null : test.findVariant(variantId);
+    }
+
+    private static String getCookieValue(HttpServletRequest request, String cookieName) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return null;
+        }
+        for (Cookie cookie : cookies) {
+            if (cookieName.equals(cookie.getName())) {
+                return cookie.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Set a cookie to persist the variant selection for 30 days
+     */
+    private void setVariantCookie(HttpServletResponse response, String cookieName, String variantId) {
+        Cookie cookie = new Cookie(cookieName, variantId);
+        cookie.setMaxAge(COOKIE_MAX_AGE_SECONDS);
+        cookie.setPath("/");
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+        log.debug("Set variant cookie: {}={}", cookieName, variantId);
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.abra.routing;
+
+import com.example.abra.models.LoadBalancingStrategy;
+import java.util.List;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Immutable routing view of an active {@link com.example.abra.models.VariantModel}
+ * together with all endpoints attached to it.
+ * <p>
+ * The only mutable part is a cache of the endpoints that are currently usable, tagged
+ * with the health registry epoch it was computed for. It is recomputed only when endpoint
+ * health changes, so selecting an endpoint per request neither filters nor allocates.
+ */
+@Getter
+public final class VariantRoute {
+
+    private final String variantId;
+    private final String name;
+    private final int weight;
+    private final LoadBalancingStrategy loadBalancing;
+    private final List<EndpointRoute> endpoints;
+    @Setter
+    private volatile HealthyEndpoints healthyEndpoints;
+
+    public VariantRoute(
+            String variantId,
+            String name,
+            int weight,
+            LoadBalancingStrategy loadBalancing,
+            List<EndpointRoute> endpoints) {
+        this.variantId = variantId;
+        this.name = name;
+        this.weight = weight;
+        this.loadBalancing = loadBalancing == null ? LoadBalancingStrategy.ROUND_ROBIN : loadBalancing;
+        this.endpoints = List.copyOf(endpoints);
+    }
+
+    /**
+     * Active, alive endpoints of this variant as of the given health registry epoch.
+     */
+    public record HealthyEndpoints(long epoch, EndpointRoute[] endpoints) {
+    }
+}
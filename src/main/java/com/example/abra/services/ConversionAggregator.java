@@ -0,0 +1,124 @@
+package com.example.abra.services;
+
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-variant conversion counts and value sums, accumulated in memory and flushed to the
+ * {@code conversion_aggregate} table every {@code abra.conversions.flush-interval-ms}.
+ * <p>
+ * Recording a conversion only touches striped adders, so concurrent ingestion requests do not
+ * contend. A flush takes what has accumulated since the previous one; if the write fails the
+ * amounts are added back and go out with the next flush.
+ * <p>
+ * Only variants in the current routing snapshot are aggregated, and a variant's entry, with
+ * whatever it has not flushed yet, is dropped once it is removed from the routing
+ * configuration; the ingestion endpoint is unauthenticated, so the map must not grow with
+ * arbitrary ids.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConversionAggregator {
+
+    private static final String INSERT_SQL = "INSERT INTO conversion_aggregate "
+        + "(flushed_at, test_id, variant_id, conversions, value_sum, value_sum_of_squares) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RoutingTable routingTable;
+
+    /**
+     * Pending conversions by variant ID (variant IDs are unique across tests).
+     */
+    private final Map<String, PendingConversions> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Add a conversion of the given variant, unless the variant is not currently routed.
+     */
+    public void record(String testId, String variantId, double value) {
+        PendingConversions conversions = pending.get(variantId);
+        if (conversions == null) {
+            if (routingTable.current().findOwningDomainId(RoutingEntityType.VARIANT, variantId) == null) {
+                return;
+            }
+            conversions = pending.computeIfAbsent(variantId, k -> new PendingConversions(testId));
+        }
+        conversions.count.increment();
+        conversions.valueSum.add(value);
+        conversions.valueSumOfSquares.add(value * value);
+    }
+
+    @Scheduled(fixedDelayString = "${abra.conversions.flush-interval-ms:5000}")
+    public void flush() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        List<Object[]> rows = new ArrayList<>();
+        pending.forEach((variantId, conversions) -> {
+            // Adders are drained one by one; a conversion recorded in between is split across flushes
+            long count = conversions.count.sumThenReset();
+            double valueSum = conversions.valueSum.sumThenReset();
+            double valueSumOfSquares = conversions.valueSumOfSquares.sumThenReset();
+            if (count > 0) {
+                rows.add(new Object[] {now, conversions.testId, variantId, count, valueSum, valueSumOfSquares});
+            }
+        });
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows,
+                new int[] {Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.DOUBLE, Types.DOUBLE});
+            log.debug("Flushed conversions of {} variants", rows.size());
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush conversions of {} variants, retrying with the next flush", rows.size(), e);
+            for (Object[] row : rows) {
+                PendingConversions conversions = pending.get((String) row[2]);
+                if (conversions == null) {
+                    // The variant was removed in the meantime
+                    continue;
+                }
+                conversions.count.add((long) row[3]);
+                conversions.valueSum.add((double) row[4]);
+                conversions.valueSumOfSquares.add((double) row[5]);
+            }
+        }
+    }
+
+    /**
+     * Drop the pending conversions of variants that are no longer in the routing snapshot.
+     */
+    @EventListener
+    public void onRoutingConfigChanged(RoutingConfigChangedEvent event) {
+        RoutingSnapshot snapshot = routingTable.current();
+        pending.keySet().removeIf(
+            variantId -> snapshot.findOwningDomainId(RoutingEntityType.VARIANT, variantId) == null);
+    }
+
+    private static final class PendingConversions {
+
+        private final String testId;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder valueSum = new DoubleAdder();
+        private final DoubleAdder valueSumOfSquares = new DoubleAdder();
+
+        PendingConversions(String testId) {
+            this.testId = testId;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.abra.services;
+
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantAssigner;
+import com.example.abra.routing.VariantRoute;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * Parses batches of conversion events and hands them to the {@link ConversionAggregator}.
+ * <p>
+ * The body is either newline-delimited JSON or a JSON array of events, read one event at a
+ * time so large batches are never held in memory. Each event names its test and either the
+ * variant (the value of the visitor's {@code abra_variant_<testId>} cookie) or, in HASH
+ * assignment mode, the visitor key. Events for unknown or inactive tests and variants are
+ * counted as rejected rather than failing the batch.
+ * <p>
+ * Values are also summarized per variant over the batch and merged into
+ * {@link ExperimentStatistics} once per batch rather than once per event.
+ */
+@Slf4j
+@Service
+public class ConversionIngestionService {
+
+    private final ObjectReader eventReader;
+    private final RoutingTable routingTable;
+    private final VariantAssigner variantAssigner;
+    private final ConversionAggregator conversionAggregator;
+    private final ExperimentStatistics experimentStatistics;
+
+    public ConversionIngestionService(
+            ObjectMapper objectMapper,
+            RoutingTable routingTable,
+            VariantAssigner variantAssigner,
+            ConversionAggregator conversionAggregator,
+            ExperimentStatistics experimentStatistics) {
+        this.eventReader = objectMapper.readerFor(ConversionEvent.class);
+        this.routingTable = routingTable;
+        this.variantAssigner = variantAssigner;
+        this.conversionAggregator = conversionAggregator;
+        this.experimentStatistics = experimentStatistics;
+    }
+
+    /**
+     * Ingest every event of the body. Events before a malformed one are kept.
+     */
+    public IngestionResult ingest(InputStream body) throws IOException {
+        RoutingSnapshot snapshot = routingTable.current();
+        Map<String, RunningStats> batchStats = new HashMap<>();
+        long accepted = 0;
+        long rejected = 0;
+        try (MappingIterator<ConversionEvent> events = eventReader.readValues(body)) {
+            while (events.hasNextValue()) {
+                ConversionEvent event = events.nextValue();
+                VariantRoute variant = resolveVariant(snapshot, event);
+                if (variant == null) {
+                    rejected++;
+                    continue;
+                }
+                double value = event.value() == null ? 1.0 : event.value();
+                conversionAggregator.record(event.testId(), variant.getVariantId(), value);
+                batchStats.computeIfAbsent(variant.getVariantId(), k -> new RunningStats()).add(value);
+                accepted++;
+            }
+        } catch (JsonProcessingException e) {
+            log.debug("Malformed conversion event after {} events", accepted + rejected, e);
+            return new IngestionResult(accepted, rejected, "Malformed event: " + e.getOriginalMessage());
+        } finally {
+            batchStats.forEach(experimentStatistics::recordConversions);
+        }
+        return new IngestionResult(accepted, rejected, null);
+    }
+
+    private VariantRoute resolveVariant(RoutingSnapshot snapshot, ConversionEvent event) {
+        if (event == null) {
+            return null;
+        }
+        TestRoute test = snapshot.findTest(event.testId());
+        if (test == null) {
+            return null;
+        }
+        if (event.variantId() != null) {
+            return test.findVariant(event.variantId());
+        }
+        if (event.visitorKey() != null && !event.visitorKey().isEmpty()) {
+            return variantAssigner.variantForVisitor(test, event.visitorKey());
+        }
+        return null;
+    }
+
+    /**
+     * @param value optional numeric outcome (e.g. order value); a plain conversion counts as 1
+     */
+    public record ConversionEvent(String testId, String variantId, String visitorKey, Double value) {
+    }
+
+    public record IngestionResult(long accepted, long rejected, String error) {
+    }
+}
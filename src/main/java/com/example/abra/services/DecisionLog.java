@@ -0,0 +1,470 @@
+package com.example.abra.services;
+
+import com.example.abra.models.RoutingMode;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Append-only binary log of every routing decision, for audits and offline analysis.
+ * <p>
+ * Decisions are appended to a memory-mapped segment file in {@code abra.decision-log.directory}
+ * (resolved to an absolute path at startup). An append claims its record's bytes with a
+ * compare-and-set on the segment's write offset and encodes the record straight into the
+ * mapping, so appending threads never block each other and allocate nothing; the lock is only
+ * taken to roll segments. A segment is closed (flushed and truncated to its used size) and a new
+ * one started once it is full ({@code abra.decision-log.segment-bytes}) or has been open for
+ * {@code abra.decision-log.roll-interval-ms}; only the newest {@code abra.decision-log.max-segments}
+ * are kept. Data reaches the disk when the OS writes the pages back or the segment is closed.
+ * A host crash may lose the open segment's tail; a process crash in the middle of an append
+ * hides the records claimed after it, as readers stop at the first record without a length.
+ * <p>
+ * Segment layout: a {@value #HEADER_BYTES} byte header (magic, format version, creation time
+ * in epoch millis) followed by records, each an {@code int} length and that many bytes of body:
+ * timestamp (epoch millis, {@code long}), decision latency (micros, {@code int}), routing mode
+ * ordinal ({@code byte}), then host, path, test id, variant id and endpoint URL as UTF-8 strings
+ * prefixed with an unsigned {@code short} length. The length is written last, so a zero length
+ * marks the end of the data. Segments are read back with {@link DecisionLogReader}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DecisionLog {
+
+    static final int MAGIC = 0x41425244;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 16;
+    static final String SEGMENT_SUFFIX = ".dlog";
+
+    private static final int FIXED_BODY_BYTES = Long.BYTES + Integer.BYTES + Byte.BYTES + 5 * Short.BYTES;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final long REOPEN_DELAY_MS = 1000;
+    private static final long CLOSE_WAIT_MS = 100;
+
+    /**
+     * Write offset of a segment that is being closed; no claim can fit behind it.
+     */
+    private static final int SEALED = Integer.MAX_VALUE;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${abra.decision-log.enabled:false}")
+    private boolean enabled;
+
+    @Value("${abra.decision-log.directory:/var/lib/abra/decision-log}")
+    private String directory;
+
+    private Path directoryPath;
+
+    @Value("${abra.decision-log.segment-bytes:67108864}")
+    private int segmentBytes;
+
+    @Value("${abra.decision-log.roll-interval-ms:3600000}")
+    private long rollIntervalMs;
+
+    @Value("${abra.decision-log.max-segments:48}")
+    private int maxSegments;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    /**
+     * Serializes opening and closing segments; appends do not take it.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile boolean running;
+
+    /**
+     * The open segment, or null; replaced under {@link #lock}.
+     */
+    private volatile Segment segment;
+
+    // Guarded by lock
+    private long nextSequence;
+    private long reopenAtMillis;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            log.info("Routing decision log is disabled");
+            return;
+        }
+        directoryPath = Path.of(directory).toAbsolutePath().normalize();
+        log.info("Routing decision log writes to {}", directoryPath);
+        // Continue numbering after the segments of earlier runs
+        List<Path> existing = DecisionLogReader.segments(directoryPath);
+        if (!existing.isEmpty()) {
+            nextSequence = sequenceOf(existing.get(existing.size() - 1)) + 1;
+        }
+        FunctionCounter.builder("abra.decision-log.written", written, LongAdder::sum)
+            .description("Routing decisions appended to the decision log")
+            .register(meterRegistry);
+        FunctionCounter.builder("abra.decision-log.dropped", dropped, LongAdder::sum)
+            .description("Routing decisions not logged because no segment could be written")
+            .register(meterRegistry);
+        running = true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the directory segments are written to, or null if the log is disabled
+     */
+    public Path getDirectory() {
+        return enabled ? directoryPath : null;
+    }
+
+    /**
+     * @return how far back the kept segments reach at most, or 0 if the log is disabled; less
+     *     when segments fill up before their roll interval
+     */
+    public long getRetentionMillis() {
+        return enabled ? maxSegments * rollIntervalMs : 0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            closeSegment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void append(DomainRoute domain, String path, TestRoute test, VariantRoute variant,
+            EndpointRoute endpoint, long decisionNanos) {
+        if (!running) {
+            return;
+        }
+        String host = domain.getHost();
+        String testId = test.getTestId();
+        String variantId = variant.getVariantId();
+        String endpointUrl = endpoint.getUrl();
+        int hostBytes = utf8Length(host);
+        int pathBytes = utf8Length(path);
+        int testIdBytes = utf8Length(testId);
+        int variantIdBytes = utf8Length(variantId);
+        int endpointUrlBytes = utf8Length(endpointUrl);
+        int length = FIXED_BODY_BYTES + hostBytes + pathBytes + testIdBytes + variantIdBytes + endpointUrlBytes;
+        long now = clock.getAsLong();
+        int decisionMicros = (int) Math.min(TimeUnit.NANOSECONDS.toMicros(decisionNanos), Integer.MAX_VALUE);
+
+        Segment target;
+        int position;
+        while (true) {
+            target = segment;
+            position = target == null || now >= target.rollAtMillis ? -1 : target.claim(Integer.BYTES + length);
+            if (position >= 0) {
+                break;
+            }
+            if (!roll(target, Integer.BYTES + length, now)) {
+                dropped.increment();
+                return;
+            }
+        }
+
+        MappedByteBuffer buffer = target.buffer;
+        int index = position + Integer.BYTES;
+        buffer.putLong(index, now);
+        index += Long.BYTES;
+        buffer.putInt(index, decisionMicros);
+        index += Integer.BYTES;
+        buffer.put(index++, (byte) domain.getRoutingMode().ordinal());
+        index = putString(buffer, index, host, hostBytes);
+        index = putString(buffer, index, path, pathBytes);
+        index = putString(buffer, index, testId, testIdBytes);
+        index = putString(buffer, index, variantId, variantIdBytes);
+        putString(buffer, index, endpointUrl, endpointUrlBytes);
+        // Publish the record only once its body is in place
+        VarHandle.storeStoreFence();
+        buffer.putInt(position, length);
+        target.written.addAndGet(Integer.BYTES + length);
+        written.increment();
+    }
+
+    /**
+     * Close the open segment once its roll interval has passed, even if nothing is appended.
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void rollIfDue() {
+        lock.lock();
+        try {
+            Segment current = segment;
+            if (current != null && clock.getAsLong() >= current.rollAtMillis) {
+                closeSegment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replace {@code full}, the segment an append found full or due, with a new one that has
+     * room for {@code bytes}, unless another thread already did.
+     *
+     * @return false if the record cannot be logged
+     */
+    private boolean roll(Segment full, int bytes, long now) {
+        lock.lock();
+        try {
+            if (!running) {
+                return false;
+            }
+            if (segment != full) {
+                return true;
+            }
+            closeSegment();
+            if (HEADER_BYTES + bytes > segmentBytes || now < reopenAtMillis) {
+                return false;
+            }
+            try {
+                openSegment(now);
+                return true;
+            } catch (IOException e) {
+                log.warn("Cannot open a decision log segment in {}", directoryPath, e);
+                reopenAtMillis = now + REOPEN_DELAY_MS;
+                return false;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openSegment(long now) throws IOException {
+        Files.createDirectories(directoryPath);
+        Path file = directoryPath.resolve(String.format("%020d%s", nextSequence++, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(Integer.BYTES, VERSION);
+            buffer.putLong(2 * Integer.BYTES, now);
+            segment = new Segment(channel, buffer, now + rollIntervalMs);
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+        deleteOldSegments();
+    }
+
+    /**
+     * Stop claims on the open segment, wait up to {@value #CLOSE_WAIT_MS} ms for the appends that
+     * already claimed space, then flush it and truncate it to its used size.
+     * <p>
+     * All claims end at or before the truncated size, so an append that is still writing when
+     * the wait runs out (a descheduled thread) completes in the mapping without faulting; its
+     * record just misses the flush and reaches the disk when the OS writes the page back.
+     */
+    private void closeSegment() {
+        Segment closing = segment;
+        if (closing == null) {
+            return;
+        }
+        segment = null;
+        int end = closing.seal();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_WAIT_MS);
+        while (closing.written.get() < end) {
+            if (System.nanoTime() - deadline >= 0) {
+                log.warn("Closing decision log segment with {} bytes of appends still in progress",
+                    end - closing.written.get());
+                break;
+            }
+            Thread.onSpinWait();
+        }
+        try {
+            closing.buffer.force();
+            closing.channel.truncate(end);
+        } catch (IOException e) {
+            log.warn("Failed to finish decision log segment", e);
+        }
+        closeQuietly(closing.channel);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close decision log segment", e);
+        }
+    }
+
+    private void deleteOldSegments() throws IOException {
+        List<Path> segments = DecisionLogReader.segments(directoryPath);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    /**
+     * UTF-8 length of {@code value}, cut at the last whole character that fits in
+     * {@value #MAX_STRING_BYTES} bytes (in practice only paths are that long; the reader decodes
+     * leniently). An unpaired surrogate is written as {@code ?}, as {@link String#getBytes} does.
+     */
+    static int utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int bytes = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            int charBytes;
+            if (c < 0x80) {
+                charBytes = 1;
+            } else if (c < 0x800) {
+                charBytes = 2;
+            } else if (isSurrogatePair(value, i)) {
+                charBytes = 4;
+                i++;
+            } else {
+                charBytes = Character.isSurrogate(c) ? 1 : 3;
+            }
+            if (bytes + charBytes > MAX_STRING_BYTES) {
+                break;
+            }
+            bytes += charBytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * Write the first {@code length} bytes of {@code value}'s UTF-8 encoding, as measured by
+     * {@link #utf8Length}, prefixed with their count.
+     *
+     * @return the index after the string
+     */
+    private static int putString(MappedByteBuffer buffer, int index, String value, int length) {
+        buffer.putShort(index, (short) length);
+        index += Short.BYTES;
+        int end = index + length;
+        for (int i = 0; index < end; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put(index++, (byte) c);
+            } else if (c < 0x800) {
+                buffer.put(index++, (byte) (0xC0 | c >> 6));
+                buffer.put(index++, (byte) (0x80 | c & 0x3F));
+            } else if (isSurrogatePair(value, i)) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put(index++, (byte) (0xF0 | codePoint >> 18));
+                buffer.put(index++, (byte) (0x80 | codePoint >> 12 & 0x3F));
+                buffer.put(index++, (byte) (0x80 | codePoint >> 6 & 0x3F));
+                buffer.put(index++, (byte) (0x80 | codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put(index++, (byte) '?');
+            } else {
+                buffer.put(index++, (byte) (0xE0 | c >> 12));
+                buffer.put(index++, (byte) (0x80 | c >> 6 & 0x3F));
+                buffer.put(index++, (byte) (0x80 | c & 0x3F));
+            }
+        }
+        return end;
+    }
+
+    private static boolean isSurrogatePair(String value, int index) {
+        return Character.isHighSurrogate(value.charAt(index)) && index + 1 < value.length()
+            && Character.isLowSurrogate(value.charAt(index + 1));
+    }
+
+    private static long sequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static final class Segment {
+
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final long rollAtMillis;
+
+        /**
+         * End of the space claimed by appends, or {@link #SEALED}.
+         */
+        private final AtomicInteger claimed = new AtomicInteger(HEADER_BYTES);
+
+        /**
+         * End of the header plus the bytes of all completed appends.
+         */
+        private final AtomicInteger written = new AtomicInteger(HEADER_BYTES);
+
+        Segment(FileChannel channel, MappedByteBuffer buffer, long rollAtMillis) {
+            this.channel = channel;
+            this.buffer = buffer;
+            this.rollAtMillis = rollAtMillis;
+        }
+
+        /**
+         * @return the position of {@code bytes} reserved for the caller, or -1 if they do not fit
+         */
+        int claim(int bytes) {
+            int position = claimed.get();
+            while (position <= buffer.capacity() - bytes) {
+                int witness = claimed.compareAndExchange(position, position + bytes);
+                if (witness == position) {
+                    return position;
+                }
+                position = witness;
+            }
+            return -1;
+        }
+
+        /**
+         * Refuse further claims.
+         *
+         * @return the end of the claimed space
+         */
+        int seal() {
+            return claimed.getAndSet(SEALED);
+        }
+    }
+
+    /**
+     * One logged routing decision.
+     *
+     * @param decisionMicros time from receiving the request to choosing the endpoint
+     */
+    public record Decision(
+            long timestampMillis,
+            long decisionMicros,
+            RoutingMode routingMode,
+            String host,
+            String path,
+            String testId,
+            String variantId,
+            String endpointUrl) {
+    }
+}
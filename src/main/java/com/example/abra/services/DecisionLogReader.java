@@ -0,0 +1,155 @@
+package com.example.abra.services;
+
+import com.example.abra.models.RoutingMode;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Reads the segments written by {@link DecisionLog}, including the one still being written.
+ * <p>
+ * Segments are memory-mapped read-only. A time range scan skips whole segments by their
+ * creation times and skips records outside the range by their timestamp and length prefix,
+ * without decoding them.
+ */
+public final class DecisionLogReader {
+
+    private static final RoutingMode[] ROUTING_MODES = RoutingMode.values();
+
+    private DecisionLogReader() {
+    }
+
+    /**
+     * Segment files in the directory, oldest first; empty if the directory does not exist.
+     */
+    public static List<Path> segments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file -> file.getFileName().toString().endsWith(DecisionLog.SEGMENT_SUFFIX))
+                .sorted()
+                .toList();
+        }
+    }
+
+    /**
+     * Hand every decision in the directory's segments to {@code consumer}, oldest first.
+     *
+     * @return the number of decisions read
+     */
+    public static long replay(Path directory, Consumer<DecisionLog.Decision> consumer) throws IOException {
+        return scan(directory, Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    /**
+     * Hand the decisions with {@code fromMillis <= timestamp < toMillis} to {@code consumer},
+     * oldest first.
+     *
+     * @return the number of decisions read
+     */
+    public static long scan(Path directory, long fromMillis, long toMillis,
+            Consumer<DecisionLog.Decision> consumer) throws IOException {
+        List<Path> segments = segments(directory);
+        long count = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            // A segment holds decisions made before the next one was created
+            if (i + 1 < segments.size() && createdMillis(segments.get(i + 1)) <= fromMillis) {
+                continue;
+            }
+            if (createdMillis(segments.get(i)) >= toMillis) {
+                break;
+            }
+            count += readSegment(segments.get(i), fromMillis, toMillis, consumer);
+        }
+        return count;
+    }
+
+    /**
+     * Hand every decision of one segment file to {@code consumer}.
+     *
+     * @return the number of decisions read
+     */
+    public static long readSegment(Path segment, Consumer<DecisionLog.Decision> consumer) throws IOException {
+        return readSegment(segment, Long.MIN_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    private static long readSegment(Path segment, long fromMillis, long toMillis,
+            Consumer<DecisionLog.Decision> consumer) throws IOException {
+        MappedByteBuffer buffer = map(segment);
+        if (buffer == null) {
+            return 0;
+        }
+        buffer.position(DecisionLog.HEADER_BYTES);
+        long count = 0;
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                // End of the data, or a record that is still being written
+                break;
+            }
+            int next = buffer.position() + length;
+            long timestamp = buffer.getLong(buffer.position());
+            if (timestamp >= fromMillis && timestamp < toMillis) {
+                consumer.accept(decode(buffer));
+                count++;
+            }
+            buffer.position(next);
+        }
+        return count;
+    }
+
+    private static DecisionLog.Decision decode(ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        int decisionMicros = buffer.getInt();
+        int mode = buffer.get();
+        return new DecisionLog.Decision(
+            timestamp,
+            decisionMicros,
+            mode >= 0 && mode < ROUTING_MODES.length ? ROUTING_MODES[mode] : null,
+            getString(buffer),
+            getString(buffer),
+            getString(buffer),
+            getString(buffer),
+            getString(buffer));
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long createdMillis(Path segment) throws IOException {
+        MappedByteBuffer buffer = map(segment);
+        return buffer == null ? Long.MIN_VALUE : buffer.getLong(Integer.BYTES * 2);
+    }
+
+    /**
+     * @return the mapped segment, or null if it is too short to have a header yet
+     */
+    private static MappedByteBuffer map(Path segment) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            if (channel.size() < DecisionLog.HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != DecisionLog.MAGIC) {
+                throw new IOException("Not a decision log segment: " + segment);
+            }
+            if (buffer.getInt(Integer.BYTES) != DecisionLog.VERSION) {
+                throw new IOException("Unsupported decision log version in " + segment);
+            }
+            return buffer;
+        }
+    }
+}
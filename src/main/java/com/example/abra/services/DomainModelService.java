@@ -16,6 +16,7 @@ import org.springframework.stereotype.Service;
 public class DomainModelService {
 
     private final DomainModelRepository domainModelRepository;
+    private final RoutingConfigVersionService routingConfigVersionService;
 
     public List<DomainModel> findAllDomains() {
         return domainModelRepository.findAll();
@@ -29,8 +30,11 @@ public class DomainModelService {
         return domainModelRepository.findByHostAndIsActiveTrue(host);
     }
 
+    @Transactional
     public DomainModel addDomain(@NonNull DomainModel domainModel) {
-        return domainModelRepository.save(domainModel);
+        DomainModel saved = domainModelRepository.save(domainModel);
+        routingConfigVersionService.bump();
+        return saved;
     }
 
     @Transactional
@@ -40,10 +44,14 @@ public class DomainModelService {
 
         existing.setActive(updated.isActive());
         existing.setHost(updated.getHost());
+        existing.setRoutingMode(updated.getRoutingMode());
         domainModelRepository.save(existing);
+        routingConfigVersionService.bump();
     }
 
+    @Transactional
     public void deleteDomainById(@NonNull String id) {
         domainModelRepository.deleteById(id);
+        routingConfigVersionService.bump();
     }
 }
@@ -0,0 +1,370 @@
+package com.example.abra.services;
+
+import com.example.abra.models.EndpointModel;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Active health checking of endpoints.
+ * <p>
+ * Every endpoint has its own probe schedule kept in a {@link TimerWheel}: probes are spread
+ * over the interval with jitter instead of hitting all backends in one burst, and endpoints
+ * that stay down are probed exponentially less often (up to {@code abra.health.max-backoff-ms}).
+ * An endpoint changes state only after {@code abra.health.unhealthy-threshold} failed or
+ * {@code abra.health.healthy-threshold} successful probes in a row. Due probes run
+ * concurrently.
+ * <p>
+ * State transitions take effect in the {@link EndpointHealthRegistry} immediately, which is
+ * what routing reads. Writing them to the database (for the admin UI) happens afterwards on
+ * a background thread, so a slow database never delays the next probes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EndpointHealthChecker {
+
+    private static final int WHEEL_SLOTS = 1024;
+
+    private final EndpointModelService endpointModelService;
+    private final EndpointHealthRegistry healthRegistry;
+    private final RoutingTable routingTable;
+
+    @Value("${abra.health.interval-ms:30000}")
+    private long intervalMs;
+
+    @Value("${abra.health.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${abra.health.jitter:0.2}")
+    private double jitter;
+
+    @Value("${abra.health.max-backoff-ms:300000}")
+    private long maxBackoffMs;
+
+    @Value("${abra.health.healthy-threshold:1}")
+    private int healthyThreshold;
+
+    @Value("${abra.health.unhealthy-threshold:1}")
+    private int unhealthyThreshold;
+
+    @Value("${abra.health.timeout-ms:5000}")
+    private long timeoutMs;
+
+    @Value("${abra.health.max-concurrency:64}")
+    private int maxConcurrency;
+
+    @Value("${abra.health.pass-deadline-ms:25000}")
+    private long passDeadlineMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final ReentrantLock healthCheckLock = new ReentrantLock();
+
+    /**
+     * Probe state per endpoint URL, guarded by {@link #healthCheckLock}.
+     */
+    private final Map<String, ProbeTarget> targets = new HashMap<>();
+
+    private TimerWheel<ProbeTarget> wheel;
+    private boolean targetsLoaded;
+    private long lastRefreshNanos;
+    private HttpClient healthCheckClient;
+    private LongSupplier clock = System::nanoTime;
+    private Executor persistenceExecutor;
+
+    @PostConstruct
+    public void init() {
+        wheel = new TimerWheel<>(TimeUnit.MILLISECONDS.toNanos(tickMs), WHEEL_SLOTS);
+        HttpClient.Builder builder = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofMillis(timeoutMs))
+            .followRedirects(HttpClient.Redirect.NEVER);
+        if (virtualThreads) {
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+        healthCheckClient = builder.build();
+        if (persistenceExecutor == null) {
+            // A single thread keeps the transitions in the order they were observed
+            Thread.Builder threadBuilder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+            persistenceExecutor = Executors.newSingleThreadExecutor(
+                threadBuilder.name("endpoint-health-persistence").factory());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (persistenceExecutor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Probe the endpoints whose slot came up since the last tick. The endpoint list is
+     * re-read from the database once per interval. A tick that is still probing when the
+     * next one is due makes the next one skip rather than overlap.
+     */
+    @Scheduled(fixedDelayString = "${abra.health.tick-ms:1000}")
+    public void performHealthChecks() {
+        if (!healthCheckLock.tryLock()) {
+            log.debug("Previous health check tick still running, skipping this one");
+            return;
+        }
+        try {
+            long now = clock.getAsLong();
+            if (!targetsLoaded || now - lastRefreshNanos >= TimeUnit.MILLISECONDS.toNanos(intervalMs)) {
+                refreshTargets(now);
+            }
+
+            List<ProbeTarget> due = new ArrayList<>();
+            wheel.advance(now, target -> {
+                if (!target.removed) {
+                    due.add(target);
+                }
+            });
+            if (due.isEmpty()) {
+                return;
+            }
+
+            log.debug("Probing {} endpoints", due.size());
+            Map<String, Boolean> results = Map.of();
+            try {
+                results = probeAll(due.stream().map(ProbeTarget::getUrl).toList());
+            } finally {
+                // The wheel no longer holds the due targets, so they must be rescheduled even if probing failed
+                applyResults(due, results, clock.getAsLong());
+            }
+        } finally {
+            healthCheckLock.unlock();
+        }
+    }
+
+    /**
+     * Start slow start for an endpoint as soon as an admin change puts it into the routing
+     * snapshot. The next target refresh may be up to an interval away, and until then the
+     * new endpoint would get a full share of traffic. Runs after the {@link RoutingTable}
+     * has applied the change.
+     */
+    @EventListener
+    public void onRoutingConfigChanged(RoutingConfigChangedEvent event) {
+        if (event.getEntityType() != RoutingEntityType.ENDPOINT) {
+            return;
+        }
+        RoutingSnapshot snapshot = routingTable.current();
+        for (String url : event.getEntityIds()) {
+            if (!healthRegistry.isTracked(url)
+                    && snapshot.findOwningDomainId(RoutingEntityType.ENDPOINT, url) != null) {
+                healthRegistry.startSlowStart(url);
+            }
+        }
+    }
+
+    /**
+     * Sync probe targets with the database: new endpoints get a random first slot within
+     * the interval and start from their stored state, deleted ones are dropped. Known
+     * endpoints keep the in-memory state, which may be newer than what is persisted.
+     * Endpoints added after the first load start in slow start if they are alive, unless
+     * their change event already started it.
+     */
+    private void refreshTargets(long now) {
+        boolean initialLoad = !targetsLoaded;
+        targetsLoaded = true;
+        lastRefreshNanos = now;
+        Set<String> seen = new HashSet<>();
+        for (EndpointModel endpoint : endpointModelService.findAllEndpoints()) {
+            seen.add(endpoint.getUrl());
+            ProbeTarget target = targets.get(endpoint.getUrl());
+            if (target == null) {
+                target = new ProbeTarget(endpoint.getUrl(), endpoint.isAlive());
+                targets.put(target.url, target);
+                healthRegistry.update(target.url, target.alive);
+                if (target.alive && !initialLoad) {
+                    healthRegistry.startSlowStart(target.url);
+                }
+                long firstDelay = (long) (ThreadLocalRandom.current().nextDouble()
+                    * TimeUnit.MILLISECONDS.toNanos(intervalMs));
+                wheel.schedule(target, now, firstDelay);
+            }
+        }
+        targets.values().removeIf(target -> {
+            if (!seen.contains(target.url)) {
+                target.removed = true;
+                healthRegistry.remove(target.url);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void applyResults(List<ProbeTarget> due, Map<String, Boolean> results, long now) {
+        List<String> recoveredUrls = new ArrayList<>();
+        List<String> failedUrls = new ArrayList<>();
+
+        for (ProbeTarget target : due) {
+            Boolean passed = results.get(target.url);
+            if (passed != null) {
+                if (passed) {
+                    target.consecutiveFailures = 0;
+                    target.consecutiveSuccesses++;
+                    if (!target.alive && target.consecutiveSuccesses >= healthyThreshold) {
+                        target.alive = true;
+                        healthRegistry.update(target.url, true);
+                        recoveredUrls.add(target.url);
+                    }
+                } else {
+                    target.consecutiveSuccesses = 0;
+                    target.consecutiveFailures++;
+                    if (target.alive && target.consecutiveFailures >= unhealthyThreshold) {
+                        target.alive = false;
+                        healthRegistry.update(target.url, false);
+                        failedUrls.add(target.url);
+                        log.warn("Endpoint {} is not alive", target.url);
+                    }
+                }
+            }
+            // Not probed before the pass deadline: keep the last known state and try again next interval
+            wheel.schedule(target, now, nextProbeDelayNanos(target));
+        }
+
+        if (!recoveredUrls.isEmpty() || !failedUrls.isEmpty()) {
+            persistenceExecutor.execute(() -> persistTransitions(recoveredUrls, failedUrls));
+        }
+    }
+
+    private void persistTransitions(List<String> recoveredUrls, List<String> failedUrls) {
+        try {
+            endpointModelService.updateEndpointHealth(recoveredUrls, failedUrls);
+        } catch (RuntimeException e) {
+            log.warn("Failed to persist endpoint health transitions: recovered={}, failed={}",
+                recoveredUrls, failedUrls, e);
+        }
+    }
+
+    /**
+     * The base interval, doubled for every failed probe after the endpoint went down,
+     * capped at the maximum backoff and spread by +/- {@code jitter}.
+     */
+    private long nextProbeDelayNanos(ProbeTarget target) {
+        long interval = TimeUnit.MILLISECONDS.toNanos(intervalMs);
+        long delay = interval;
+        if (!target.alive) {
+            int downProbes = Math.max(0, target.consecutiveFailures - unhealthyThreshold);
+            delay = Math.min(interval << Math.min(downProbes, 20), TimeUnit.MILLISECONDS.toNanos(maxBackoffMs));
+        }
+        if (jitter > 0) {
+            delay += (long) (delay * jitter * (ThreadLocalRandom.current().nextDouble() * 2 - 1));
+        }
+        return delay;
+    }
+
+    /**
+     * Probe the given URLs concurrently, at most {@code maxConcurrency} at a time.
+     * URLs whose probe did not finish before the pass deadline are missing from the result.
+     */
+    private Map<String, Boolean> probeAll(List<String> urls) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(passDeadlineMs);
+        Semaphore permits = new Semaphore(maxConcurrency);
+        Map<String, Boolean> results = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> probes = new ArrayList<>(urls.size());
+
+        try {
+            for (String url : urls) {
+                if (!permits.tryAcquire(remainingNanos(deadline), TimeUnit.NANOSECONDS)) {
+                    log.warn("Health check pass deadline reached, {} endpoints not probed",
+                        urls.size() - probes.size());
+                    break;
+                }
+                probes.add(probe(url)
+                    .thenAccept(alive -> results.put(url, alive))
+                    .whenComplete((ignored, error) -> permits.release()));
+            }
+            CompletableFuture.allOf(probes.toArray(CompletableFuture[]::new))
+                .get(remainingNanos(deadline), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (TimeoutException e) {
+            log.warn("Health check pass deadline reached with {} of {} endpoints probed",
+                results.size(), urls.size());
+        } catch (ExecutionException e) {
+            log.warn("Health check pass failed", e.getCause());
+        }
+        return Map.copyOf(results);
+    }
+
+    private CompletableFuture<Boolean> probe(String url) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .GET()
+                .build();
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(false);
+        }
+        try {
+            return healthCheckClient
+                .sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> error == null && response.statusCode() == HttpURLConnection.HTTP_OK);
+        } catch (RuntimeException e) {
+            // A probe that cannot even be sent counts as failed instead of aborting the whole pass
+            log.debug("Health check of {} could not be sent", url, e);
+            return CompletableFuture.completedFuture(false);
+        }
+    }
+
+    private static long remainingNanos(long deadline) {
+        return Math.max(0, deadline - System.nanoTime());
+    }
+
+    private static final class ProbeTarget {
+
+        private final String url;
+        private boolean alive;
+        private int consecutiveSuccesses;
+        private int consecutiveFailures;
+        private boolean removed;
+
+        ProbeTarget(String url, boolean alive) {
+            this.url = url;
+            this.alive = alive;
+        }
+
+        String getUrl() {
+            return url;
+        }
+    }
+}
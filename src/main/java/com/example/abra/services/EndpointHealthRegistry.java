@@ -0,0 +1,132 @@
+package com.example.abra.services;
+
+import com.example.abra.routing.EndpointRoute;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory source of truth for endpoint liveness on this node.
+ * <p>
+ * The health checker writes probe outcomes here first, and endpoint selection reads them
+ * directly, so a health flip affects routing on the next request without touching the
+ * database or rebuilding the routing snapshot. Every change bumps an epoch, which lets
+ * callers cache derived views (such as a variant's usable endpoints) until it moves.
+ * Endpoints not known to the registry yet fall back to the state loaded with the snapshot.
+ * <p>
+ * An endpoint that comes back alive, or is added while the application is running, is in
+ * slow start for {@code abra.slow-start.window-ms}: its {@link #slowStartFactor} ramps linearly
+ * from {@code abra.slow-start.min-weight} to 1 so it is not handed a full share of traffic
+ * while still cold.
+ */
+@Component
+public class EndpointHealthRegistry {
+
+    @Value("${abra.slow-start.window-ms:30000}")
+    private long slowStartWindowMs;
+
+    @Value("${abra.slow-start.min-weight:0.1}")
+    private double slowStartMinWeight;
+
+    private final Map<String, Boolean> aliveByUrl = new ConcurrentHashMap<>();
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * Start of the slow-start window per warming endpoint; entries are dropped once it has passed.
+     */
+    private final Map<String, Long> warmingSince = new ConcurrentHashMap<>();
+
+    /**
+     * Latest slow-start end across all endpoints, so selection can skip slow-start
+     * lookups entirely while nothing is warming up.
+     */
+    private final AtomicLong latestWarmupEnd = new AtomicLong(Long.MIN_VALUE);
+
+    private LongSupplier clock = System::nanoTime;
+
+    public long getEpoch() {
+        return epoch.get();
+    }
+
+    public boolean isAlive(EndpointRoute endpoint) {
+        Boolean alive = aliveByUrl.get(endpoint.getUrl());
+        return alive != null ? alive : endpoint.isAlive();
+    }
+
+    /**
+     * Record the endpoint's liveness. An endpoint that was known to be down and is now
+     * alive enters slow start.
+     */
+    public void update(String url, boolean alive) {
+        Boolean previous = aliveByUrl.put(url, alive);
+        if (previous == null || previous != alive) {
+            epoch.incrementAndGet();
+        }
+        if (alive && Boolean.FALSE.equals(previous)) {
+            startSlowStart(url);
+        } else if (!alive) {
+            warmingSince.remove(url);
+        }
+    }
+
+    public void remove(String url) {
+        warmingSince.remove(url);
+        if (aliveByUrl.remove(url) != null) {
+            epoch.incrementAndGet();
+        }
+    }
+
+    /**
+     * Whether the registry has a liveness state for the endpoint, i.e. the health checker knows it.
+     */
+    public boolean isTracked(String url) {
+        return aliveByUrl.containsKey(url);
+    }
+
+    /**
+     * Put an endpoint into slow start, e.g. one that was added after startup.
+     * An endpoint whose slow-start window is still running keeps it.
+     */
+    public void startSlowStart(String url) {
+        if (slowStartWindowMs <= 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        long window = TimeUnit.MILLISECONDS.toNanos(slowStartWindowMs);
+        long since = warmingSince.compute(url,
+            (key, current) -> current != null && now - current < window ? current : now);
+        long end = since + window;
+        latestWarmupEnd.accumulateAndGet(end, (a, b) -> a == Long.MIN_VALUE || b - a > 0 ? b : a);
+    }
+
+    /**
+     * Whether any endpoint may currently be in slow start.
+     */
+    public boolean hasWarmingEndpoints() {
+        long end = latestWarmupEnd.get();
+        return end != Long.MIN_VALUE && end - clock.getAsLong() > 0;
+    }
+
+    /**
+     * Fraction of its normal traffic share the endpoint should receive: 1 outside slow start,
+     * otherwise growing linearly with the time since it entered slow start.
+     */
+    public double slowStartFactor(String url) {
+        Long since = warmingSince.get(url);
+        if (since == null) {
+            return 1.0;
+        }
+        long window = TimeUnit.MILLISECONDS.toNanos(slowStartWindowMs);
+        long elapsed = clock.getAsLong() - since;
+        if (window <= 0 || elapsed >= window) {
+            warmingSince.remove(url, since);
+            return 1.0;
+        }
+        double progress = Math.max(0, elapsed) / (double) window;
+        return slowStartMinWeight + (1 - slowStartMinWeight) * progress;
+    }
+}
@@ -2,10 +2,12 @@ package com.example.abra.services;
 
 import com.example.abra.models.EndpointModel;
 import com.example.abra.repositories.EndpointModelRepository;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +16,7 @@ import java.util.Optional;
 public class EndpointModelService {
 
     private final EndpointModelRepository endpointModelRepository;
+    private final RoutingConfigVersionService routingConfigVersionService;
 
     public List<EndpointModel> findAllEndpoints() {
         return endpointModelRepository.findAll();
@@ -27,15 +30,37 @@ public class EndpointModelService {
         return endpointModelRepository.findById(id);
     }
 
+    @Transactional
     public EndpointModel addEndpoint(@NonNull EndpointModel endpointModel) {
-        return endpointModelRepository.save(endpointModel);
+        EndpointModel saved = endpointModelRepository.save(endpointModel);
+        routingConfigVersionService.bump();
+        return saved;
     }
 
+    @Transactional
     public void updateEndpoint(@NonNull EndpointModel updated) {
         endpointModelRepository.save(updated);
+        routingConfigVersionService.bump();
     }
 
+    /**
+     * Persist the health transitions of one check pass with one bulk update per new state.
+     * Health is probed independently by every node, so this does not advance the routing
+     * config version.
+     */
+    @Transactional
+    public void updateEndpointHealth(@NonNull Collection<String> aliveUrls, @NonNull Collection<String> deadUrls) {
+        if (!aliveUrls.isEmpty()) {
+            endpointModelRepository.updateAliveByUrlIn(true, aliveUrls);
+        }
+        if (!deadUrls.isEmpty()) {
+            endpointModelRepository.updateAliveByUrlIn(false, deadUrls);
+        }
+    }
+
+    @Transactional
     public void deleteEndpointById(@NonNull String id) {
         endpointModelRepository.deleteById(id);
+        routingConfigVersionService.bump();
     }
 }
@@ -1,17 +1,22 @@
 package com.example.abra.services;
 
-import com.example.abra.models.EndpointModel;
-import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.net.URI;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 @Slf4j
@@ -19,66 +24,352 @@ import org.springframework.stereotype.Service;
 @RequiredArgsConstructor
 public class EndpointService {
 
-    private final EndpointModelService endpointModelService;
+    /**
+     * Weight of the newest latency sample in the moving average.
+     */
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final OutlierDetector outlierDetector;
+    private final EndpointHealthRegistry healthRegistry;
+    private final RoutingTable routingTable;
 
     private final Map<String, AtomicInteger> roundRobinCounters =
         new ConcurrentHashMap<>();
 
+    private final Map<String, EndpointLoad> endpointLoads =
+        new ConcurrentHashMap<>();
+
     /**
-     * Select a healthy endpoint for the given variant using round-robin load balancing
+     * Select a healthy endpoint for the given variant using the variant's load balancing strategy.
+     * Liveness comes from the {@link EndpointHealthRegistry}; the variant caches its usable
+     * endpoints per registry epoch, so this neither filters nor allocates while health is stable.
+     * The round-robin counter is allowed to wrap, floorMod keeps the index in range after it does.
+     * <p>
+     * Endpoints ejected by the {@link OutlierDetector} are skipped, unless every healthy
+     * endpoint of the variant is ejected: then ejection is ignored rather than failing
+     * all requests.
+     * <p>
+     * An endpoint in slow start keeps only its {@link EndpointHealthRegistry#slowStartFactor}
+     * of the picks the strategy gives it; the rest go to a fully warm endpoint, so its
+     * effective weight ramps up with the factor.
      */
-    public EndpointModel selectEndpoint(String variantId) {
-        List<EndpointModel> endpoints = endpointModelService.findByVariantId(variantId);
-        
-        List<EndpointModel> availableEndpoints = endpoints
-            .stream()
-            .filter(EndpointModel::isActive)
-            .filter(EndpointModel::isAlive)
-            .toList();
-
-        if (availableEndpoints.isEmpty()) {
+    public EndpointRoute selectEndpoint(VariantRoute variant) {
+        EndpointRoute[] healthy = healthyEndpoints(variant);
+        if (healthy.length == 0) {
             return null;
         }
+        if (healthy.length == 1) {
+            return healthy[0];
+        }
 
+        boolean skipEjected = outlierDetector.hasEjections();
+        EndpointRoute selected = switch (variant.getLoadBalancing()) {
+            case ROUND_ROBIN -> selectRoundRobin(variant, healthy, skipEjected);
+            case LEAST_OUTSTANDING -> selectLeastOutstanding(variant, healthy, skipEjected);
+            case POWER_OF_TWO_CHOICES -> selectPowerOfTwoChoices(variant, healthy, skipEjected);
+            case EWMA_LATENCY -> selectLowestLatency(variant, healthy, skipEjected);
+        };
+        if (selected == null) {
+            log.debug("All endpoints of variant {} are ejected, ignoring ejection", variant.getName());
+            selected = selectRoundRobin(variant, healthy, false);
+        }
+        if (healthRegistry.hasWarmingEndpoints()) {
+            double factor = healthRegistry.slowStartFactor(selected.getUrl());
+            if (factor < 1 && ThreadLocalRandom.current().nextDouble() >= factor) {
+                EndpointRoute warm = selectWarm(healthy, skipEjected);
+                if (warm != null) {
+                    selected = warm;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Record that a request was sent to the endpoint. Must be paired with {@link #onRequestComplete}.
+     */
+    public void onRequestStart(EndpointRoute endpoint) {
+        loadOf(endpoint).inFlight.incrementAndGet();
+    }
+
+    /**
+     * Record the end of a proxied request.
+     *
+     * @param status the status sent to the client; 5xx (including the proxy's own 502 and 504)
+     *               counts as an endpoint failure, 0 means the request was aborted on the client side
+     */
+    public void onRequestComplete(EndpointRoute endpoint, long latencyNanos, int status) {
+        // The load may have been dropped or reset while the request was in flight
+        EndpointLoad load = endpointLoads.get(endpoint.getUrl());
+        if (load != null) {
+            load.inFlight.getAndUpdate(inFlight -> Math.max(inFlight - 1, 0));
+            load.recordLatency(latencyNanos);
+        }
+        if (status > 0) {
+            outlierDetector.record(endpoint.getUrl(), status >= 500);
+        }
+    }
+
+    /**
+     * Forget the load of the endpoints an admin change named, so a URL that is removed and
+     * added again starts without the old in-flight count and latency average, and drop the
+     * round-robin counters and loads of variants and endpoints no longer in the routing
+     * snapshot. Runs after the {@link RoutingTable} has applied the change.
+     */
+    @EventListener
+    public void onRoutingConfigChanged(RoutingConfigChangedEvent event) {
+        if (event.getEntityType() == RoutingEntityType.ENDPOINT) {
+            endpointLoads.keySet().removeAll(event.getEntityIds());
+        }
+        RoutingSnapshot snapshot = routingTable.current();
+        roundRobinCounters.keySet().removeIf(
+            variantId -> snapshot.findOwningDomainId(RoutingEntityType.VARIANT, variantId) == null);
+        endpointLoads.keySet().removeIf(
+            url -> snapshot.findOwningDomainId(RoutingEntityType.ENDPOINT, url) == null);
+    }
+
+    /**
+     * The test's variant weights scaled by healthy capacity: each configured weight times the
+     * fraction of the variant's active endpoints that are alive, so a variant that lost part of
+     * its pool gets proportionally fewer new visitors instead of overloading what is left.
+     * If no variant has a live endpoint, the configured weights are used. Cached on the test
+     * per health registry epoch.
+     */
+    public TestRoute.EffectiveWeights effectiveWeights(TestRoute test) {
+        long epoch = healthRegistry.getEpoch();
+        TestRoute.EffectiveWeights cached = test.getEffectiveWeights();
+        if (cached != null && cached.epoch() == epoch) {
+            return cached;
+        }
+        List<VariantRoute> variants = test.getVariants();
+        double[] weights = new double[variants.size()];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Math.max(variants.get(i).getWeight(), 0) * healthyCapacity(variants.get(i));
+            total += weights[i];
+        }
+        if (total <= 0) {
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = Math.max(variants.get(i).getWeight(), 0);
+            }
+        }
+        TestRoute.EffectiveWeights effective = new TestRoute.EffectiveWeights(epoch, weights);
+        test.setEffectiveWeights(effective);
+        return effective;
+    }
+
+    /**
+     * Configured and capacity-adjusted weights of each variant of the test, with the resulting
+     * traffic shares of new random assignments.
+     */
+    public List<VariantWeight> variantWeights(TestRoute test) {
+        double[] effective = effectiveWeights(test).weights();
+        List<VariantRoute> variants = test.getVariants();
+        double configuredTotal = 0;
+        double effectiveTotal = 0;
+        for (int i = 0; i < variants.size(); i++) {
+            configuredTotal += Math.max(variants.get(i).getWeight(), 0);
+            effectiveTotal += effective[i];
+        }
+        List<VariantWeight> result = new ArrayList<>(variants.size());
+        for (int i = 0; i < variants.size(); i++) {
+            VariantRoute variant = variants.get(i);
+            result.add(new VariantWeight(
+                variant.getVariantId(),
+                variant.getName(),
+                variant.getWeight(),
+                effective[i],
+                configuredTotal > 0 ? Math.max(variant.getWeight(), 0) / configuredTotal : 0,
+                effectiveTotal > 0 ? effective[i] / effectiveTotal : 0,
+                activeEndpointCount(variant),
+                healthyEndpoints(variant).length));
+        }
+        return result;
+    }
+
+    private double healthyCapacity(VariantRoute variant) {
+        int active = activeEndpointCount(variant);
+        return active == 0 ? 0 : (double) healthyEndpoints(variant).length / active;
+    }
+
+    private static int activeEndpointCount(VariantRoute variant) {
+        int active = 0;
+        for (EndpointRoute endpoint : variant.getEndpoints()) {
+            if (endpoint.isActive()) {
+                active++;
+            }
+        }
+        return active;
+    }
+
+    private EndpointRoute[] healthyEndpoints(VariantRoute variant) {
+        long epoch = healthRegistry.getEpoch();
+        VariantRoute.HealthyEndpoints cached = variant.getHealthyEndpoints();
+        if (cached != null && cached.epoch() == epoch) {
+            return cached.endpoints();
+        }
+        EndpointRoute[] healthy = variant.getEndpoints().stream()
+            .filter(endpoint -> endpoint.isActive() && healthRegistry.isAlive(endpoint))
+            .toArray(EndpointRoute[]::new);
+        variant.setHealthyEndpoints(new VariantRoute.HealthyEndpoints(epoch, healthy));
+        return healthy;
+    }
+
+    private int nextIndex(VariantRoute variant, int healthy) {
         AtomicInteger counter = roundRobinCounters.computeIfAbsent(
-            variantId,
+            variant.getVariantId(),
             k -> new AtomicInteger(0)
         );
-        int index = counter.getAndIncrement() % availableEndpoints.size();
-        return availableEndpoints.get(index);
+        return Math.floorMod(counter.getAndIncrement(), healthy);
+    }
+
+    private boolean isEjected(EndpointRoute endpoint) {
+        return outlierDetector.isEjected(endpoint.getUrl());
+    }
+
+    private EndpointRoute selectRoundRobin(VariantRoute variant, EndpointRoute[] healthy, boolean skipEjected) {
+        int start = nextIndex(variant, healthy.length);
+        if (!skipEjected) {
+            return healthy[start];
+        }
+        for (int i = 0; i < healthy.length; i++) {
+            EndpointRoute candidate = healthy[(start + i) % healthy.length];
+            if (!isEjected(candidate)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An endpoint that is not in slow start (nor ejected, if requested), scanning from a random
+     * position so the round-robin counter is left alone.
+     */
+    private EndpointRoute selectWarm(EndpointRoute[] healthy, boolean skipEjected) {
+        int start = ThreadLocalRandom.current().nextInt(healthy.length);
+        for (int i = 0; i < healthy.length; i++) {
+            EndpointRoute candidate = healthy[(start + i) % healthy.length];
+            if (healthRegistry.slowStartFactor(candidate.getUrl()) >= 1
+                    && !(skipEjected && isEjected(candidate))) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private EndpointLoad loadOf(EndpointRoute endpoint) {
+        return endpointLoads.computeIfAbsent(endpoint.getUrl(), k -> new EndpointLoad());
+    }
+
+    /**
+     * Scan starts at the round-robin position so ties (e.g. all idle) still rotate.
+     */
+    private EndpointRoute selectLeastOutstanding(VariantRoute variant, EndpointRoute[] healthy, boolean skipEjected) {
+        int start = nextIndex(variant, healthy.length);
+        EndpointRoute best = null;
+        int bestInFlight = Integer.MAX_VALUE;
+        for (int i = 0; i < healthy.length; i++) {
+            EndpointRoute candidate = healthy[(start + i) % healthy.length];
+            if (skipEjected && isEjected(candidate)) {
+                continue;
+            }
+            int inFlight = loadOf(candidate).inFlight.get();
+            if (inFlight < bestInFlight) {
+                best = candidate;
+                bestInFlight = inFlight;
+            }
+        }
+        return best;
     }
 
-    @Scheduled(fixedRate = 30000)
-    public void performHealthChecks() {
-        log.info("Performing health checks...");
-        List<EndpointModel> endpoints = endpointModelService.findAllEndpoints();
+    private EndpointRoute selectPowerOfTwoChoices(VariantRoute variant, EndpointRoute[] healthy, boolean skipEjected) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(healthy.length);
+        int second = random.nextInt(healthy.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        EndpointRoute a = healthy[first];
+        EndpointRoute b = healthy[second];
+        if (skipEjected) {
+            boolean aEjected = isEjected(a);
+            boolean bEjected = isEjected(b);
+            if (aEjected && bEjected) {
+                return selectRoundRobin(variant, healthy, true);
+            }
+            if (aEjected || bEjected) {
+                return aEjected ? b : a;
+            }
+        }
+        return loadOf(b).inFlight.get() < loadOf(a).inFlight.get() ? b : a;
+    }
+
+    /**
+     * Cost is the latency average times (in-flight + 1). Endpoints without samples yet
+     * are costed at the slowest known average so a new endpoint is tried but not flooded.
+     */
+    private EndpointRoute selectLowestLatency(VariantRoute variant, EndpointRoute[] healthy, boolean skipEjected) {
+        double slowest = 1;
+        for (int i = 0; i < healthy.length; i++) {
+            slowest = Math.max(slowest, loadOf(healthy[i]).ewmaNanos());
+        }
 
-        for (EndpointModel endpoint : endpoints) {
-            boolean isAlive = pingEndpoint(endpoint.getUrl());
-            endpoint.setAlive(isAlive);
-            if (!isAlive) {
-                log.warn("Endpoint {} is not alive", endpoint.getUrl());
+        int start = nextIndex(variant, healthy.length);
+        EndpointRoute best = null;
+        double bestCost = Double.MAX_VALUE;
+        for (int i = 0; i < healthy.length; i++) {
+            EndpointRoute candidate = healthy[(start + i) % healthy.length];
+            if (skipEjected && isEjected(candidate)) {
+                continue;
+            }
+            EndpointLoad load = loadOf(candidate);
+            double latency = load.ewmaNanos();
+            double cost = (latency > 0 ? latency : slowest) * (load.inFlight.get() + 1);
+            if (cost < bestCost) {
+                best = candidate;
+                bestCost = cost;
             }
-            endpointModelService.updateEndpoint(endpoint);
         }
+        return best;
     }
 
-    private boolean pingEndpoint(String urlString) {
-        try {
-            URL url = URI.create(urlString).toURL();
-            HttpURLConnection connection =
-                (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
-            connection.connect();
+    /**
+     * @param configuredShare share of new random assignments by configured weight
+     * @param effectiveShare share of new random assignments by capacity-adjusted weight
+     */
+    public record VariantWeight(
+            String variantId,
+            String name,
+            int configuredWeight,
+            double effectiveWeight,
+            double configuredShare,
+            double effectiveShare,
+            int activeEndpoints,
+            int healthyEndpoints) {
+    }
 
-            int responseCode = connection.getResponseCode();
-            connection.disconnect();
+    /**
+     * Lock-free per-endpoint load: requests in flight and an exponentially weighted
+     * moving average of latency, stored as raw double bits so it can be updated with CAS.
+     */
+    private static final class EndpointLoad {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong ewmaBits = new AtomicLong(Double.doubleToRawLongBits(0));
+
+        double ewmaNanos() {
+            return Double.longBitsToDouble(ewmaBits.get());
+        }
 
-            return responseCode == HttpURLConnection.HTTP_OK;
-        } catch (IOException e) {
-            return false;
+        void recordLatency(long latencyNanos) {
+            long current;
+            long next;
+            do {
+                current = ewmaBits.get();
+                double ewma = Double.longBitsToDouble(current);
+                double updated = ewma == 0 ? latencyNanos : ewma + EWMA_ALPHA * (latencyNanos - ewma);
+                next = Double.doubleToRawLongBits(updated);
+            } while (!ewmaBits.compareAndSet(current, next));
         }
     }
 }
@@ -0,0 +1,276 @@
+package com.example.abra.services;
+
+import com.example.abra.models.VariantModel;
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Live comparison of test variants from sufficient statistics kept up to date as exposures and
+ * conversions arrive: exposed visitors per variant, and count, Welford mean and variance of
+ * conversion values. A query touches only the variants of the test, never raw events.
+ * <p>
+ * A visitor counts as exposed once: on the request that newly assigned it a variant
+ * ({@link com.example.abra.routing.AssignmentSource#NEW}), or, in HASH mode, on the first
+ * request of its visitor key. {@link ExposureEventPipeline} decides this when it writes the
+ * events, by recording first exposures in the {@code visitor_exposure} table, which lets a HASH
+ * visitor in only once across nodes and restarts, and reports them here. Conversions are merged
+ * in per ingested batch by {@link ConversionIngestionService}. At startup the totals so far are
+ * loaded once from {@code visitor_exposure} and {@code conversion_aggregate}; after that each
+ * node adds the exposures it writes and the conversions it ingests, so with several replicas a
+ * node's numbers lag the others' traffic until its next restart.
+ * <p>
+ * For each variant it reports the conversion rate with its Beta(1 + conversions,
+ * 1 + non-converting exposures) posterior, and against the control variant the relative lift,
+ * a two-proportion z-test, the posterior probability of beating the control and a mixture
+ * sequential probability ratio test (mSPRT). The mSPRT p-value stays valid however often results
+ * are looked at, unlike the z-test's, so it is the one to stop a test on.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExperimentStatistics {
+
+    private static final String LOAD_EXPOSURES_SQL =
+        "SELECT variant_id, COUNT(*) FROM visitor_exposure GROUP BY variant_id";
+
+    private static final String LOAD_CONVERSIONS_SQL = "SELECT variant_id, SUM(conversions), SUM(value_sum), "
+        + "SUM(value_sum_of_squares) FROM conversion_aggregate GROUP BY variant_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${abra.stats.alpha:0.05}")
+    private double alpha;
+
+    /**
+     * Standard deviation of the normal mixing distribution over conversion rate differences.
+     */
+    @Value("${abra.stats.msprt-tau:0.05}")
+    private double msprtTau;
+
+    private final Map<String, VariantState> variants = new ConcurrentHashMap<>();
+
+    /**
+     * Load the exposures and conversions recorded before this node started.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            jdbcTemplate.query(LOAD_EXPOSURES_SQL, rs -> {
+                recordExposures(rs.getString(1), rs.getLong(2));
+            });
+            jdbcTemplate.query(LOAD_CONVERSIONS_SQL, rs -> {
+                recordConversions(rs.getString(1), RunningStats.of(rs.getLong(2), rs.getDouble(3), rs.getDouble(4)));
+            });
+        } catch (DataAccessException e) {
+            log.warn("Failed to load experiment statistics, counting from zero", e);
+        }
+    }
+
+    /**
+     * Add first exposures of visitors to a variant.
+     */
+    public void recordExposures(String variantId, long visitors) {
+        state(variantId).exposures.add(visitors);
+    }
+
+    /**
+     * Add a batch of conversion values of one variant.
+     */
+    public void recordConversions(String variantId, RunningStats values) {
+        VariantState state = state(variantId);
+        state.lock.lock();
+        try {
+            state.values.merge(values);
+        } finally {
+            state.lock.unlock();
+        }
+    }
+
+    /**
+     * Compare the given variants of a test.
+     *
+     * @param controlVariantId the variant the others are compared to; the first variant if null or unknown
+     */
+    public TestStatistics analyze(String testId, List<VariantModel> variantModels, String controlVariantId) {
+        List<VariantSample> samples = new ArrayList<>(variantModels.size());
+        VariantSample control = null;
+        for (VariantModel variantModel : variantModels) {
+            VariantSample sample = sample(variantModel);
+            samples.add(sample);
+            if (control == null || sample.variantId().equals(controlVariantId)) {
+                control = sample;
+            }
+        }
+
+        List<VariantStatistics> results = new ArrayList<>(samples.size());
+        for (VariantSample sample : samples) {
+            results.add(new VariantStatistics(
+                sample.variantId(),
+                sample.name(),
+                sample.exposures(),
+                sample.conversions(),
+                sample.conversionRate(),
+                sample.posteriorMean(),
+                Math.max(0, sample.posteriorMean() - 1.96 * Math.sqrt(sample.posteriorVariance())),
+                Math.min(1, sample.posteriorMean() + 1.96 * Math.sqrt(sample.posteriorVariance())),
+                sample.values().getMean(),
+                Math.sqrt(sample.values().getVariance()),
+                sample == control ? null : compare(sample, control)));
+        }
+        return new TestStatistics(testId, control == null ? null : control.variantId(), alpha, results);
+    }
+
+    private Comparison compare(VariantSample variant, VariantSample control) {
+        double rate = variant.conversionRate();
+        double controlRate = control.conversionRate();
+        double difference = rate - controlRate;
+        double lift = controlRate > 0 ? difference / controlRate : 0;
+
+        // Two-proportion z-test with pooled variance
+        double pValue = 1;
+        long exposures = variant.exposures() + control.exposures();
+        if (variant.exposures() > 0 && control.exposures() > 0) {
+            double pooled = (variant.conversions() + control.conversions()) / (double) exposures;
+            double standardError = Math.sqrt(pooled * (1 - pooled)
+                * (1.0 / variant.exposures() + 1.0 / control.exposures()));
+            if (standardError > 0) {
+                pValue = 2 * (1 - normalCdf(Math.abs(difference) / standardError));
+            }
+        }
+
+        double posteriorSpread = Math.sqrt(variant.posteriorVariance() + control.posteriorVariance());
+        double probabilityToBeat = posteriorSpread > 0
+            ? normalCdf((variant.posteriorMean() - control.posteriorMean()) / posteriorSpread)
+            : 0.5;
+
+        double msprtPValue = msprtPValue(variant, control, difference);
+        return new Comparison(lift, pValue, 1 - pValue, probabilityToBeat, msprtPValue, msprtPValue <= alpha);
+    }
+
+    /**
+     * Mixture SPRT for a difference in conversion rates, with a normal N(0, tau^2) mixture
+     * over the true difference: Lambda = sqrt(V / (V + tau^2)) * exp(tau^2 d^2 / (2 V (V + tau^2))),
+     * where d is the observed difference and V its variance. The p-value is 1 / Lambda.
+     */
+    private double msprtPValue(VariantSample variant, VariantSample control, double difference) {
+        if (variant.exposures() == 0 || control.exposures() == 0) {
+            return 1;
+        }
+        double rate = variant.conversionRate();
+        double controlRate = control.conversionRate();
+        double v = rate * (1 - rate) / variant.exposures() + controlRate * (1 - controlRate) / control.exposures();
+        if (v <= 0) {
+            return 1;
+        }
+        double tau2 = msprtTau * msprtTau;
+        double logLambda = 0.5 * Math.log(v / (v + tau2)) + tau2 * difference * difference / (2 * v * (v + tau2));
+        return Math.min(1, Math.exp(-logLambda));
+    }
+
+    private VariantSample sample(VariantModel variantModel) {
+        VariantState state = variants.get(variantModel.getVariant_id());
+        if (state == null) {
+            return new VariantSample(variantModel.getVariant_id(), variantModel.getName(), 0, new RunningStats());
+        }
+        RunningStats values;
+        state.lock.lock();
+        try {
+            values = state.values.copy();
+        } finally {
+            state.lock.unlock();
+        }
+        return new VariantSample(variantModel.getVariant_id(), variantModel.getName(), state.exposures.sum(), values);
+    }
+
+    private VariantState state(String variantId) {
+        VariantState state = variants.get(variantId);
+        return state != null ? state : variants.computeIfAbsent(variantId, k -> new VariantState());
+    }
+
+    /**
+     * Standard normal CDF (Abramowitz and Stegun 7.1.26, absolute error below 1.5e-7).
+     */
+    static double normalCdf(double x) {
+        double z = Math.abs(x) / Math.sqrt(2);
+        double t = 1 / (1 + 0.3275911 * z);
+        double poly = t * (0.254829592 + t * (-0.284496736 + t * (1.421413741 + t * (-1.453152027 + t * 1.061405429))));
+        double erf = 1 - poly * Math.exp(-z * z);
+        return x >= 0 ? 0.5 * (1 + erf) : 0.5 * (1 - erf);
+    }
+
+    private static final class VariantState {
+
+        private final LongAdder exposures = new LongAdder();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final RunningStats values = new RunningStats();
+    }
+
+    private record VariantSample(String variantId, String name, long exposures, RunningStats values) {
+
+        long conversions() {
+            return values.getCount();
+        }
+
+        /**
+         * Conversions per exposed visitor; above 1 only if visitors convert more than once.
+         */
+        double conversionRate() {
+            return exposures == 0 ? 0 : conversions() / (double) exposures;
+        }
+
+        double posteriorMean() {
+            return (1.0 + conversions()) / (2.0 + Math.max(exposures, conversions()));
+        }
+
+        double posteriorVariance() {
+            double a = 1.0 + conversions();
+            // Repeat conversions leave no non-converting exposures rather than a negative count
+            double b = 1.0 + Math.max(exposures - conversions(), 0);
+            return a * b / ((a + b) * (a + b) * (a + b + 1));
+        }
+    }
+
+    public record TestStatistics(String testId, String controlVariantId, double alpha, List<VariantStatistics> variants) {
+    }
+
+    /**
+     * @param credibleLow lower end of the 95% credible interval of the conversion rate (normal approximation)
+     * @param comparison null for the control variant
+     */
+    public record VariantStatistics(
+            String variantId,
+            String name,
+            long exposures,
+            long conversions,
+            double conversionRate,
+            double posteriorMean,
+            double credibleLow,
+            double credibleHigh,
+            double valueMean,
+            double valueStdDev,
+            Comparison comparison) {
+    }
+
+    /**
+     * @param significant whether the mSPRT p-value is at or below alpha
+     */
+    public record Comparison(
+            double lift,
+            double pValue,
+            double confidence,
+            double probabilityToBeatControl,
+            double msprtPValue,
+            boolean significant) {
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.abra.services;
+
+import com.example.abra.routing.AssignmentSource;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Durable record of every routing decision ({@code exposure_event} table) without a database
+ * write on the request path.
+ * <p>
+ * {@link #publish} puts the event into a bounded {@link MpscRingBuffer}; a single background
+ * thread drains it and inserts up to {@code abra.exposure.batch-size} rows per JDBC batch.
+ * When the buffer is full the {@code abra.exposure.backpressure} policy applies: {@code DROP}
+ * discards the event immediately, {@code BLOCK} waits up to {@code abra.exposure.block-timeout-ms}
+ * for space before discarding it, so a stalled database can never hold request threads
+ * indefinitely. Visitor keys are hashed on the writer thread, never stored in clear.
+ * <p>
+ * The writer also records first exposures for {@link ExperimentStatistics}: every new variant
+ * assignment, and the first request of each visitor key in HASH mode, go to the
+ * {@code visitor_exposure} table. HASH visitors are inserted only if their hash is not there
+ * yet, so a visitor is counted once across nodes and restarts; the most recent
+ * {@code abra.exposure.known-visitors} hashes are remembered to skip the database for
+ * returning visitors.
+ * <p>
+ * Queue depth, written, dropped and failed events are published as {@code abra.exposure.*} meters.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExposureEventPipeline {
+
+    private static final String INSERT_SQL = "INSERT INTO exposure_event "
+        + "(occurred_at, test_id, variant_id, endpoint_url, assignment, visitor_hash) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_NEW_VISITOR_SQL = "INSERT INTO visitor_exposure "
+        + "(first_seen_at, test_id, variant_id, visitor_hash) VALUES (?, ?, ?, NULL)";
+
+    private static final String INSERT_HASH_VISITOR_SQL = "INSERT INTO visitor_exposure "
+        + "(first_seen_at, test_id, variant_id, visitor_hash) "
+        + "SELECT CAST(? AS TIMESTAMP), CAST(? AS VARCHAR(50)), CAST(? AS VARCHAR(50)), CAST(? AS VARCHAR(64)) "
+        + "WHERE NOT EXISTS (SELECT 1 FROM visitor_exposure WHERE test_id = ? AND visitor_hash = ?)";
+
+    private static final int[] NEW_VISITOR_TYPES = {Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR};
+    private static final int[] HASH_VISITOR_TYPES =
+        {Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR};
+
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    public enum Backpressure {
+        DROP,
+        BLOCK
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ExperimentStatistics experimentStatistics;
+
+    @Value("${abra.exposure.enabled:true}")
+    private boolean enabled;
+
+    @Value("${abra.exposure.capacity:65536}")
+    private int capacity;
+
+    @Value("${abra.exposure.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${abra.exposure.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${abra.exposure.backpressure:DROP}")
+    private Backpressure backpressure;
+
+    @Value("${abra.exposure.block-timeout-ms:50}")
+    private long blockTimeoutMs;
+
+    @Value("${abra.exposure.visitor-key-salt:}")
+    private String visitorKeySalt;
+
+    @Value("${abra.exposure.known-visitors:100000}")
+    private int knownVisitorCapacity;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * Recently seen HASH visitors ({@code testId:hash}), least recently used first; writer thread only.
+     */
+    private Map<String, Boolean> knownVisitors;
+
+    private MpscRingBuffer<ExposureEvent> buffer;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Exposure event recording is disabled");
+            return;
+        }
+        // Round the capacity up to a power of two
+        buffer = new MpscRingBuffer<>(Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1));
+        Gauge.builder("abra.exposure.queue.depth", buffer, MpscRingBuffer::size)
+            .description("Exposure events waiting to be written")
+            .register(meterRegistry);
+        FunctionCounter.builder("abra.exposure.written", written, LongAdder::sum)
+            .description("Exposure events written to the database")
+            .register(meterRegistry);
+        FunctionCounter.builder("abra.exposure.dropped", dropped, LongAdder::sum)
+            .description("Exposure events discarded because the queue was full")
+            .register(meterRegistry);
+        FunctionCounter.builder("abra.exposure.failed", failed, LongAdder::sum)
+            .description("Exposure events lost to failed database writes")
+            .register(meterRegistry);
+
+        int knownVisitorLimit = knownVisitorCapacity;
+        knownVisitors = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > knownVisitorLimit;
+            }
+        };
+
+        running = true;
+        Thread.Builder threadBuilder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        writer = threadBuilder.name("exposure-event-writer").start(this::runWriter);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    /**
+     * Queue an exposure for writing.
+     *
+     * @param source how the variant was assigned
+     * @param visitorKey the stable visitor key of the request, or null
+     * @return false if the event was dropped
+     */
+    public boolean publish(TestRoute test, VariantRoute variant, EndpointRoute endpoint, AssignmentSource source,
+            String visitorKey) {
+        if (buffer == null) {
+            return false;
+        }
+        ExposureEvent event = new ExposureEvent(System.currentTimeMillis(), test.getTestId(),
+            variant.getVariantId(), endpoint == null ? null : endpoint.getUrl(), source, visitorKey);
+        if (buffer.offer(event)) {
+            return true;
+        }
+        if (backpressure == Backpressure.BLOCK) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+            while (deadline - System.nanoTime() > 0) {
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                if (buffer.offer(event)) {
+                    return true;
+                }
+            }
+        }
+        dropped.increment();
+        return false;
+    }
+
+    private void runWriter() {
+        MessageDigest digest = sha256();
+        List<Object[]> batch = new ArrayList<>(batchSize);
+        long flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        long lastFlush = System.nanoTime();
+
+        while (running || buffer.size() > 0) {
+            buffer.drain(event -> batch.add(toRow(event, digest)), batchSize - batch.size());
+            boolean full = batch.size() >= batchSize;
+            if (!batch.isEmpty() && (full || !running || System.nanoTime() - lastFlush >= flushIntervalNanos)) {
+                writeBatch(batch);
+                batch.clear();
+                lastFlush = System.nanoTime();
+            }
+            if (!full) {
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch,
+                new int[] {Types.TIMESTAMP, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR});
+            written.add(batch.size());
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            log.warn("Failed to write {} exposure events", batch.size(), e);
+        }
+        recordFirstExposures(batch);
+    }
+
+    /**
+     * Insert the batch's first exposures into {@code visitor_exposure} and report the ones that
+     * were new to {@link ExperimentStatistics}.
+     */
+    private void recordFirstExposures(List<Object[]> batch) {
+        List<Object[]> newVisitors = new ArrayList<>();
+        List<Object[]> hashVisitors = new ArrayList<>();
+        for (Object[] row : batch) {
+            if (AssignmentSource.NEW.name().equals(row[4])) {
+                newVisitors.add(new Object[] {row[0], row[1], row[2]});
+            } else if (AssignmentSource.HASH.name().equals(row[4]) && row[5] != null
+                    && knownVisitors.put(row[1] + ":" + row[5], Boolean.TRUE) == null) {
+                hashVisitors.add(new Object[] {row[0], row[1], row[2], row[5], row[1], row[5]});
+            }
+        }
+        Map<String, Long> exposures = new HashMap<>();
+        if (!newVisitors.isEmpty()) {
+            try {
+                jdbcTemplate.batchUpdate(INSERT_NEW_VISITOR_SQL, newVisitors, NEW_VISITOR_TYPES);
+                newVisitors.forEach(row -> exposures.merge((String) row[2], 1L, Long::sum));
+            } catch (DataAccessException e) {
+                log.warn("Failed to record {} new visitor exposures", newVisitors.size(), e);
+            }
+        }
+        if (!hashVisitors.isEmpty()) {
+            try {
+                int[] inserted = insertHashVisitors(hashVisitors);
+                for (int i = 0; i < inserted.length; i++) {
+                    if (inserted[i] > 0) {
+                        exposures.merge((String) hashVisitors.get(i)[2], 1L, Long::sum);
+                    }
+                }
+            } catch (DataAccessException e) {
+                log.warn("Failed to record {} hash visitor exposures", hashVisitors.size(), e);
+                // Let them try again with their next request
+                hashVisitors.forEach(row -> knownVisitors.remove(row[1] + ":" + row[3]));
+            }
+        }
+        exposures.forEach(experimentStatistics::recordExposures);
+    }
+
+    private int[] insertHashVisitors(List<Object[]> rows) {
+        try {
+            return jdbcTemplate.batchUpdate(INSERT_HASH_VISITOR_SQL, rows, HASH_VISITOR_TYPES);
+        } catch (DuplicateKeyException e) {
+            // Another node inserted one of the visitors at the same time; sort it out row by row
+            int[] inserted = new int[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                try {
+                    inserted[i] = jdbcTemplate.update(INSERT_HASH_VISITOR_SQL, rows.get(i), HASH_VISITOR_TYPES);
+                } catch (DuplicateKeyException duplicate) {
+                    inserted[i] = 0;
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private Object[] toRow(ExposureEvent event, MessageDigest digest) {
+        return new Object[] {
+            new Timestamp(event.timestampMillis()),
+            event.testId(),
+            event.variantId(),
+            event.endpointUrl(),
+            event.source() == null ? null : event.source().name(),
+            hashVisitorKey(event.visitorKey(), digest)
+        };
+    }
+
+    private String hashVisitorKey(String visitorKey, MessageDigest digest) {
+        if (visitorKey == null) {
+            return null;
+        }
+        digest.update(visitorKeySalt.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest(visitorKey.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record ExposureEvent(
+            long timestampMillis, String testId, String variantId, String endpointUrl, AssignmentSource source,
+            String visitorKey) {
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.abra.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size log-linear latency histogram in microseconds, in the spirit of HdrHistogram.
+ * <p>
+ * Values below {@value #SUB_BUCKETS} us are counted exactly; above that every power of two is
+ * split into {@value #SUB_BUCKETS} linear sub-buckets, so any recorded value is reported within
+ * about 3% of its true value. Values above {@link #MAX_MICROS} (about 19 hours) are clamped.
+ * Recording is a single atomic increment, and {@link Snapshot}s of histograms with the same
+ * layout can be merged by adding their counts.
+ * <p>
+ * The counts are allocated lazily, one group of {@value #SUB_BUCKETS} buckets per power of two
+ * the first time a value falls into it. Latencies of one variant or endpoint rarely span more
+ * than a few powers of two, so a histogram typically takes a few hundred bytes to a couple of
+ * kilobytes instead of the full {@value #BUCKET_COUNT} counters.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 36;
+    static final long MAX_MICROS = (1L << (MAX_EXPONENT + 1)) - 1;
+    static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+    private static final int GROUP_COUNT = BUCKET_COUNT / SUB_BUCKETS;
+
+    /**
+     * Bucket {@code i} is counted at index {@code i % SUB_BUCKETS} of group {@code i / SUB_BUCKETS}.
+     */
+    private final AtomicReferenceArray<AtomicLongArray> groups = new AtomicReferenceArray<>(GROUP_COUNT);
+
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordMicros(long micros) {
+        int bucket = bucketOf(Math.min(Math.max(micros, 0), MAX_MICROS));
+        group(bucket >>> SUB_BUCKET_BITS).incrementAndGet(bucket & (SUB_BUCKETS - 1));
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        addTo(copy);
+        return new Snapshot(copy);
+    }
+
+    /**
+     * Add this histogram's counts to {@code target}, an array of {@link #BUCKET_COUNT} counts.
+     */
+    void addTo(long[] target) {
+        for (int g = 0; g < GROUP_COUNT; g++) {
+            AtomicLongArray group = groups.get(g);
+            if (group == null) {
+                continue;
+            }
+            int offset = g << SUB_BUCKET_BITS;
+            for (int i = 0; i < SUB_BUCKETS; i++) {
+                target[offset + i] += group.get(i);
+            }
+        }
+    }
+
+    private AtomicLongArray group(int index) {
+        AtomicLongArray group = groups.get(index);
+        if (group != null) {
+            return group;
+        }
+        AtomicLongArray created = new AtomicLongArray(SUB_BUCKETS);
+        AtomicLongArray raced = groups.compareAndExchange(index, null, created);
+        return raced != null ? raced : created;
+    }
+
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (micros >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Highest value counted in the given bucket.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Immutable copy of a histogram's counts.
+     */
+    public static final class Snapshot {
+
+        public static final Snapshot EMPTY = new Snapshot(new long[BUCKET_COUNT]);
+
+        private final long[] counts;
+        private final long totalCount;
+
+        /**
+         * Wrap the given counts, which the caller must not modify afterwards.
+         */
+        static Snapshot of(long[] counts) {
+            return new Snapshot(counts);
+        }
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.totalCount = total;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public Snapshot merge(Snapshot other) {
+            long[] merged = counts.clone();
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                merged[i] += other.counts[i];
+            }
+            return new Snapshot(merged);
+        }
+
+        /**
+         * Smallest bucket bound that at least {@code percentile} percent of the values are
+         * less than or equal to, or 0 if nothing was recorded.
+         */
+        public long valueAtPercentile(double percentile) {
+            if (totalCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+            long seen = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBoundOf(i);
+                }
+            }
+            return upperBoundOf(BUCKET_COUNT - 1);
+        }
+
+        public long getMaxMicros() {
+            for (int i = BUCKET_COUNT - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return upperBoundOf(i);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Non-empty buckets in ascending order.
+         */
+        public List<Bucket> getBuckets() {
+            List<Bucket> buckets = new ArrayList<>();
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                if (counts[i] > 0) {
+                    buckets.add(new Bucket(upperBoundOf(i), counts[i]));
+                }
+            }
+            return buckets;
+        }
+    }
+
+    public record Bucket(long upperBoundMicros, long count) {
+    }
+}
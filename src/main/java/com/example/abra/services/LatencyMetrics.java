@@ -0,0 +1,239 @@
+package com.example.abra.services;
+
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.VariantRoute;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Latency distributions of routed requests: upstream latency per variant and per endpoint
+ * (PROXY domains), and routing decision latency per variant.
+ * <p>
+ * Requests are recorded into the histograms of the current interval. Every
+ * {@code abra.latency.interval-ms} a fresh interval starts and the finished one is retained,
+ * up to {@code abra.latency.retention-intervals}; queries merge the requested number of most
+ * recent intervals. Finished intervals keep their live histograms, so a request that was
+ * recorded while the interval rolled over still lands in the interval it started in.
+ * <p>
+ * Histograms are created on a variant's or endpoint's first request in an interval and
+ * dropped from all intervals once it is removed from the routing configuration.
+ */
+@Component
+@RequiredArgsConstructor
+public class LatencyMetrics {
+
+    public static final String UPSTREAM = "upstream";
+    public static final String DECISION = "decision";
+
+    private final RoutingTable routingTable;
+
+    @Value("${abra.latency.retention-intervals:60}")
+    private int retentionIntervals;
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private final ReentrantLock rollLock = new ReentrantLock();
+
+    private volatile Interval current = new Interval(clock.getAsLong());
+
+    /**
+     * Finished intervals, newest first; guarded by {@link #rollLock}.
+     */
+    private final Deque<Interval> retained = new ArrayDeque<>();
+
+    public void recordUpstream(VariantRoute variant, EndpointRoute endpoint, long nanos) {
+        Interval interval = current;
+        histogram(interval.variantUpstream, variant.getVariantId()).recordNanos(nanos);
+        histogram(interval.endpointUpstream, endpoint.getUrl()).recordNanos(nanos);
+    }
+
+    public void recordDecision(VariantRoute variant, long nanos) {
+        histogram(current.variantDecision, variant.getVariantId()).recordNanos(nanos);
+    }
+
+    /**
+     * Start a new interval and retain the finished one.
+     */
+    @Scheduled(fixedRateString = "${abra.latency.interval-ms:60000}")
+    public void rollInterval() {
+        rollLock.lock();
+        try {
+            retained.addFirst(current);
+            current = new Interval(clock.getAsLong());
+            while (retained.size() > retentionIntervals) {
+                retained.removeLast();
+            }
+        } finally {
+            rollLock.unlock();
+        }
+    }
+
+    /**
+     * Drop the histograms of variants and endpoints that are no longer in the routing snapshot.
+     * A request routed just before the change may still record into the current interval; its
+     * histogram goes away with that interval.
+     */
+    @EventListener
+    public void onRoutingConfigChanged(RoutingConfigChangedEvent event) {
+        RoutingSnapshot snapshot = routingTable.current();
+        rollLock.lock();
+        try {
+            prune(current, snapshot);
+            retained.forEach(interval -> prune(interval, snapshot));
+        } finally {
+            rollLock.unlock();
+        }
+    }
+
+    /**
+     * Percentiles of every variant and endpoint over the current interval and up to
+     * {@code intervals} finished ones before it.
+     */
+    public LatencyReport report(int intervals) {
+        List<Interval> selected = select(intervals);
+        Map<String, LatencyHistogram.Snapshot> upstream = merge(selected, interval -> interval.variantUpstream);
+        Map<String, LatencyHistogram.Snapshot> decision = merge(selected, interval -> interval.variantDecision);
+        Set<String> variantIds = new TreeSet<>(upstream.keySet());
+        variantIds.addAll(decision.keySet());
+
+        List<VariantLatency> variants = variantIds.stream()
+            .map(id -> new VariantLatency(id, LatencySummary.of(upstream.get(id)), LatencySummary.of(decision.get(id))))
+            .toList();
+        List<EndpointLatency> endpoints = merge(selected, interval -> interval.endpointUpstream).entrySet().stream()
+            .map(entry -> new EndpointLatency(entry.getKey(), LatencySummary.of(entry.getValue())))
+            .toList();
+        return new LatencyReport(selected.get(selected.size() - 1).startMillis, clock.getAsLong(), variants, endpoints);
+    }
+
+    /**
+     * Full distribution of one variant or endpoint over the same range as {@link #report}.
+     *
+     * @param kind {@link #UPSTREAM} or {@link #DECISION}
+     * @param scope "variant" or "endpoint" (endpoints only have upstream latency)
+     * @return the distribution, or null if the kind/scope combination does not exist
+     */
+    public LatencyHistogram.Snapshot distribution(String kind, String scope, String id, int intervals) {
+        Function<Interval, Map<String, LatencyHistogram>> histograms;
+        if (UPSTREAM.equals(kind) && "variant".equals(scope)) {
+            histograms = interval -> interval.variantUpstream;
+        } else if (UPSTREAM.equals(kind) && "endpoint".equals(scope)) {
+            histograms = interval -> interval.endpointUpstream;
+        } else if (DECISION.equals(kind) && "variant".equals(scope)) {
+            histograms = interval -> interval.variantDecision;
+        } else {
+            return null;
+        }
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        for (Interval interval : select(intervals)) {
+            LatencyHistogram histogram = histograms.apply(interval).get(id);
+            if (histogram != null) {
+                histogram.addTo(counts);
+            }
+        }
+        return LatencyHistogram.Snapshot.of(counts);
+    }
+
+    private List<Interval> select(int intervals) {
+        List<Interval> selected = new ArrayList<>();
+        rollLock.lock();
+        try {
+            selected.add(current);
+            for (Interval interval : retained) {
+                if (selected.size() > intervals) {
+                    break;
+                }
+                selected.add(interval);
+            }
+        } finally {
+            rollLock.unlock();
+        }
+        return selected;
+    }
+
+    private static Map<String, LatencyHistogram.Snapshot> merge(
+            List<Interval> intervals, Function<Interval, Map<String, LatencyHistogram>> histograms) {
+        // One array of counts per id, however many intervals are merged
+        Map<String, long[]> counts = new TreeMap<>();
+        for (Interval interval : intervals) {
+            histograms.apply(interval).forEach((id, histogram) ->
+                histogram.addTo(counts.computeIfAbsent(id, k -> new long[LatencyHistogram.BUCKET_COUNT])));
+        }
+        Map<String, LatencyHistogram.Snapshot> merged = new TreeMap<>();
+        counts.forEach((id, idCounts) -> merged.put(id, LatencyHistogram.Snapshot.of(idCounts)));
+        return merged;
+    }
+
+    private static void prune(Interval interval, RoutingSnapshot snapshot) {
+        interval.variantUpstream.keySet().removeIf(
+            id -> snapshot.findOwningDomainId(RoutingEntityType.VARIANT, id) == null);
+        interval.variantDecision.keySet().removeIf(
+            id -> snapshot.findOwningDomainId(RoutingEntityType.VARIANT, id) == null);
+        interval.endpointUpstream.keySet().removeIf(
+            url -> snapshot.findOwningDomainId(RoutingEntityType.ENDPOINT, url) == null);
+    }
+
+    private static LatencyHistogram histogram(Map<String, LatencyHistogram> histograms, String key) {
+        LatencyHistogram histogram = histograms.get(key);
+        return histogram != null ? histogram : histograms.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    private static final class Interval {
+
+        private final long startMillis;
+        private final Map<String, LatencyHistogram> variantUpstream = new ConcurrentHashMap<>();
+        private final Map<String, LatencyHistogram> endpointUpstream = new ConcurrentHashMap<>();
+        private final Map<String, LatencyHistogram> variantDecision = new ConcurrentHashMap<>();
+
+        Interval(long startMillis) {
+            this.startMillis = startMillis;
+        }
+    }
+
+    public record LatencyReport(
+            long fromMillis, long toMillis, List<VariantLatency> variants, List<EndpointLatency> endpoints) {
+    }
+
+    public record VariantLatency(String variantId, LatencySummary upstream, LatencySummary decision) {
+    }
+
+    public record EndpointLatency(String url, LatencySummary upstream) {
+    }
+
+    /**
+     * Request count and percentiles in microseconds.
+     */
+    public record LatencySummary(long count, long p50, long p90, long p99, long p999, long max) {
+
+        static LatencySummary of(LatencyHistogram.Snapshot snapshot) {
+            if (snapshot == null) {
+                return new LatencySummary(0, 0, 0, 0, 0, 0);
+            }
+            return new LatencySummary(
+                snapshot.getTotalCount(),
+                snapshot.valueAtPercentile(50),
+                snapshot.valueAtPercentile(90),
+                snapshot.valueAtPercentile(99),
+                snapshot.valueAtPercentile(99.9),
+                snapshot.getMaxMicros());
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.abra.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer.
+ * <p>
+ * Producers claim a slot by advancing the tail with CAS and then publish the element into it;
+ * the consumer takes elements in claim order and stops at the first slot whose element has not
+ * been published yet. {@link #offer} never blocks: a full buffer is reported to the caller,
+ * which decides whether to drop or retry.
+ */
+final class MpscRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    MpscRingBuffer(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    boolean offer(E element) {
+        long claimed;
+        do {
+            claimed = tail.get();
+            if (claimed - head.get() > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(claimed, claimed + 1));
+        slots.lazySet((int) (claimed & mask), element);
+        return true;
+    }
+
+    /**
+     * Hand up to {@code max} elements to {@code consumer}. Only one thread may drain.
+     *
+     * @return the number of elements drained
+     */
+    int drain(Consumer<E> consumer, int max) {
+        long next = head.get();
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (next & mask);
+            E element = slots.get(index);
+            if (element == null) {
+                break;
+            }
+            slots.lazySet(index, null);
+            next++;
+            head.lazySet(next);
+            drained++;
+            consumer.accept(element);
+        }
+        return drained;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
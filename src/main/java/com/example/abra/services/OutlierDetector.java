@@ -0,0 +1,164 @@
+package com.example.abra.services;
+
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Passive health checking: ejects endpoints based on the outcome of real proxied requests.
+ * <p>
+ * An endpoint is ejected after {@code abra.outlier.consecutive-failures} failures in a row,
+ * or when at least {@code abra.outlier.error-rate} of its requests failed within the current
+ * interval (once the interval has {@code abra.outlier.min-requests} requests). Ejections last
+ * {@code abra.outlier.base-ejection-ms}, doubling for every ejection that follows shortly after
+ * the previous one, up to {@code abra.outlier.max-ejection-ms}. When an ejection expires the
+ * endpoint simply receives traffic again; its next requests decide whether it stays.
+ * <p>
+ * All state is kept in atomics, so recording and {@link #isEjected} never lock. The state of
+ * an endpoint is dropped once it is removed from the routing configuration.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutlierDetector {
+
+    private final RoutingTable routingTable;
+
+    @Value("${abra.outlier.consecutive-failures:5}")
+    private int consecutiveFailureThreshold;
+
+    @Value("${abra.outlier.error-rate:0.5}")
+    private double errorRateThreshold;
+
+    @Value("${abra.outlier.min-requests:20}")
+    private int minRequests;
+
+    @Value("${abra.outlier.interval-ms:10000}")
+    private long intervalMs;
+
+    @Value("${abra.outlier.base-ejection-ms:30000}")
+    private long baseEjectionMs;
+
+    @Value("${abra.outlier.max-ejection-ms:300000}")
+    private long maxEjectionMs;
+
+    private final Map<String, EndpointOutcomes> outcomes = new ConcurrentHashMap<>();
+
+    /**
+     * Latest ejection end across all endpoints, so selection can skip ejection
+     * lookups entirely while nothing is ejected. {@link Long#MIN_VALUE} until the first ejection,
+     * as any other initial value may lie in the future of the nanosecond clock.
+     */
+    private final AtomicLong latestEjectionEnd = new AtomicLong(Long.MIN_VALUE);
+
+    private LongSupplier clock = System::nanoTime;
+
+    /**
+     * Record the outcome of a request proxied to the given endpoint.
+     *
+     * @param failed whether the request failed (connection error, timeout or 5xx response)
+     */
+    public void record(String url, boolean failed) {
+        EndpointOutcomes state = outcomes.computeIfAbsent(url, k -> new EndpointOutcomes(clock.getAsLong()));
+        long now = clock.getAsLong();
+        state.rollInterval(now, TimeUnit.MILLISECONDS.toNanos(intervalMs));
+
+        int requests = state.intervalRequests.incrementAndGet();
+        if (!failed) {
+            state.consecutiveFailures.set(0);
+            return;
+        }
+        int failures = state.intervalFailures.incrementAndGet();
+        int consecutive = state.consecutiveFailures.incrementAndGet();
+
+        if (consecutive >= consecutiveFailureThreshold) {
+            eject(url, state, now, consecutive + " consecutive failures");
+        } else if (requests >= minRequests && failures >= errorRateThreshold * requests) {
+            eject(url, state, now, failures + "/" + requests + " requests failed");
+        }
+    }
+
+    public boolean isEjected(String url) {
+        EndpointOutcomes state = outcomes.get(url);
+        return state != null && state.ejectedUntil.get() - clock.getAsLong() > 0;
+    }
+
+    /**
+     * Whether any endpoint may currently be ejected.
+     */
+    public boolean hasEjections() {
+        long end = latestEjectionEnd.get();
+        return end != Long.MIN_VALUE && end - clock.getAsLong() > 0;
+    }
+
+    /**
+     * Drop the outcomes of endpoints that are no longer in the routing snapshot.
+     */
+    @EventListener
+    public void onRoutingConfigChanged(RoutingConfigChangedEvent event) {
+        RoutingSnapshot snapshot = routingTable.current();
+        outcomes.keySet().removeIf(url -> snapshot.findOwningDomainId(RoutingEntityType.ENDPOINT, url) == null);
+    }
+
+    private void eject(String url, EndpointOutcomes state, long now, String reason) {
+        long previousEnd = state.ejectedUntil.get();
+        if (previousEnd - now > 0) {
+            return;
+        }
+
+        long maxEjectionNanos = TimeUnit.MILLISECONDS.toNanos(maxEjectionMs);
+        // Back off only while the endpoint keeps failing soon after its last ejection
+        int ejections = state.ejections > 0 && now - previousEnd < maxEjectionNanos ? state.ejections + 1 : 1;
+        long durationNanos = Math.min(
+            TimeUnit.MILLISECONDS.toNanos(baseEjectionMs) << Math.min(ejections - 1, 20),
+            maxEjectionNanos);
+        long until = now + durationNanos;
+        if (!state.ejectedUntil.compareAndSet(previousEnd, until)) {
+            return;
+        }
+        state.ejections = ejections;
+        state.consecutiveFailures.set(0);
+        state.intervalRequests.set(0);
+        state.intervalFailures.set(0);
+        latestEjectionEnd.accumulateAndGet(until, (a, b) -> a == Long.MIN_VALUE || b - a > 0 ? b : a);
+        log.warn("Ejecting endpoint {} for {} ms: {}", url, TimeUnit.NANOSECONDS.toMillis(durationNanos), reason);
+    }
+
+    private static final class EndpointOutcomes {
+
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicInteger intervalRequests = new AtomicInteger();
+        private final AtomicInteger intervalFailures = new AtomicInteger();
+        private final AtomicLong intervalStart;
+        private final AtomicLong ejectedUntil;
+        /**
+         * Ejections in the current backoff streak; written only by the thread that won the ejection CAS.
+         */
+        private volatile int ejections;
+
+        EndpointOutcomes(long now) {
+            this.intervalStart = new AtomicLong(now);
+            this.ejectedUntil = new AtomicLong(now);
+        }
+
+        void rollInterval(long now, long intervalNanos) {
+            long start = intervalStart.get();
+            if (now - start >= intervalNanos && intervalStart.compareAndSet(start, now)) {
+                intervalRequests.set(0);
+                intervalFailures.set(0);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.abra.services;
+
+/**
+ * Request counts of the most recent {@code buckets} time buckets of one resolution, in a
+ * primitive array indexed by bucket number modulo its length. Buckets older than the window
+ * are overwritten as time advances; skipped buckets read as 0. Not thread-safe.
+ */
+final class RollupRing {
+
+    private final long[] counts;
+    private final int resolutionSeconds;
+
+    /**
+     * Newest bucket written, or {@link Long#MIN_VALUE} before the first write.
+     */
+    private long lastBucket = Long.MIN_VALUE;
+
+    RollupRing(int buckets, int resolutionSeconds) {
+        if (buckets <= 0 || resolutionSeconds <= 0) {
+            throw new IllegalArgumentException("buckets and resolution must be positive");
+        }
+        this.counts = new long[buckets];
+        this.resolutionSeconds = resolutionSeconds;
+    }
+
+    int capacity() {
+        return counts.length;
+    }
+
+    /**
+     * Add {@code count} to the bucket containing {@code epochSecond}; ignored if that bucket
+     * has already left the window.
+     */
+    void add(long epochSecond, long count) {
+        long bucket = Math.floorDiv(epochSecond, resolutionSeconds);
+        if (lastBucket == Long.MIN_VALUE) {
+            lastBucket = bucket;
+        } else if (bucket > lastBucket) {
+            // Clear the slots of the buckets between the previous newest one and this one
+            long cleared = Math.min(bucket - lastBucket, counts.length);
+            for (long b = bucket - cleared + 1; b <= bucket; b++) {
+                counts[slot(b)] = 0;
+            }
+            lastBucket = bucket;
+        } else if (bucket <= lastBucket - counts.length) {
+            return;
+        }
+        counts[slot(bucket)] += count;
+    }
+
+    /**
+     * Counts of the {@code points} buckets up to and including the one containing
+     * {@code endEpochSecond}, oldest first.
+     */
+    long[] read(long endEpochSecond, int points) {
+        long end = Math.floorDiv(endEpochSecond, resolutionSeconds);
+        long[] result = new long[points];
+        if (lastBucket == Long.MIN_VALUE) {
+            return result;
+        }
+        for (int i = 0; i < points; i++) {
+            long bucket = end - points + 1 + i;
+            if (bucket <= lastBucket && bucket > lastBucket - counts.length) {
+                result[i] = counts[slot(bucket)];
+            }
+        }
+        return result;
+    }
+
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) counts.length);
+    }
+}
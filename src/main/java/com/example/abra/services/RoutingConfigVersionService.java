@@ -0,0 +1,87 @@
+package com.example.abra.services;
+
+import com.example.abra.repositories.RoutingConfigVersionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.transaction.Transactional;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Tracks the cluster-wide routing configuration version.
+ * <p>
+ * Every write through the *ModelServices calls {@link #bump()} inside its own transaction,
+ * so the version row changes exactly when the configuration does. Versions produced by
+ * this node are remembered after commit; the routing table has already applied those
+ * through local change events and only needs a full reload for versions produced elsewhere.
+ * The version row is created at startup if it does not exist yet, so bumping it is always a
+ * plain update.
+ */
+@Service
+@RequiredArgsConstructor
+public class RoutingConfigVersionService {
+
+    private static final Integer VERSION_ROW_ID = 1;
+
+    private final RoutingConfigVersionRepository routingConfigVersionRepository;
+
+    private final NavigableSet<Long> localVersions = new ConcurrentSkipListSet<>();
+
+    /**
+     * Create the version row at version 0 unless it exists. Replicas starting together may both
+     * try; the loser's primary key violation means the row is there.
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            routingConfigVersionRepository.insertIfAbsent(VERSION_ROW_ID);
+        } catch (DataIntegrityViolationException e) {
+            // Inserted concurrently by another replica
+        }
+    }
+
+    /**
+     * Increment the configuration version in the current transaction.
+     * The update row-locks the counter, so concurrent writers get distinct versions.
+     */
+    @Transactional
+    public void bump() {
+        if (routingConfigVersionRepository.increment(VERSION_ROW_ID) == 0) {
+            throw new IllegalStateException("Routing config version row " + VERSION_ROW_ID + " is missing");
+        }
+        long version = currentVersion();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    localVersions.add(version);
+                }
+            });
+        } else {
+            localVersions.add(version);
+        }
+    }
+
+    public long currentVersion() {
+        return routingConfigVersionRepository.findConfigVersion(VERSION_ROW_ID).orElse(0L);
+    }
+
+    /**
+     * Consume the given version if it was committed by this node.
+     */
+    public boolean consumeLocalVersion(long version) {
+        return localVersions.remove(version);
+    }
+
+    /**
+     * Forget local versions that are already covered by a full reload.
+     */
+    public void discardLocalVersionsUpTo(long version) {
+        localVersions.headSet(version, true).clear();
+    }
+}
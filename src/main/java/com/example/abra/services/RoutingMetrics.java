@@ -0,0 +1,129 @@
+package com.example.abra.services;
+
+import com.example.abra.routing.AssignmentSource;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Per-domain, test, variant and endpoint routing decision counts, plus how variants were
+ * assigned, published to Micrometer ({@code /actuator/metrics/abra.routing.*}).
+ * <p>
+ * Each count is a {@link LongAdder} that the registry reads through a {@link FunctionCounter}
+ * only when metrics are scraped, so recording a request is an uncontended increment. A counter
+ * is registered the first time its domain, test, variant or endpoint routes a request;
+ * after that the hot path only does a lock-free map read. The counts and counters of a domain,
+ * test, variant or endpoint are dropped once it is removed from the routing configuration.
+ */
+@Component
+public class RoutingMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final RoutingTable routingTable;
+
+    private final Map<String, LongAdder> domainCounts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> testCounts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> variantCounts = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> endpointCounts = new ConcurrentHashMap<>();
+    private final LongAdder[] assignmentCounts = new LongAdder[AssignmentSource.values().length];
+
+    public RoutingMetrics(MeterRegistry meterRegistry, RoutingTable routingTable) {
+        this.meterRegistry = meterRegistry;
+        this.routingTable = routingTable;
+        for (AssignmentSource source : AssignmentSource.values()) {
+            LongAdder count = new LongAdder();
+            assignmentCounts[source.ordinal()] = count;
+            register("abra.routing.assignments", "Variant assignments by source",
+                Tags.of("source", source.name().toLowerCase(Locale.ROOT)), count);
+        }
+    }
+
+    /**
+     * Count a request routed to the given endpoint of a variant.
+     */
+    public void recordDecision(DomainRoute domain, TestRoute test, VariantRoute variant, EndpointRoute endpoint) {
+        counter(domainCounts, domain.getHost(), host -> register("abra.routing.domain.requests",
+            "Requests routed per domain", Tags.of("domain", host), new LongAdder())).increment();
+        counter(testCounts, test.getTestId(), testId -> register("abra.routing.test.requests",
+            "Requests routed per test", Tags.of("test", testId), new LongAdder())).increment();
+        counter(variantCounts, variant.getVariantId(), variantId -> register("abra.routing.variant.requests",
+            "Requests routed per variant", Tags.of("test", test.getTestId(), "variant", variantId),
+            new LongAdder())).increment();
+        counter(endpointCounts, endpoint.getUrl(), url -> register("abra.routing.endpoint.requests",
+            "Requests routed per endpoint", Tags.of("endpoint", url), new LongAdder())).increment();
+    }
+
+    public void recordAssignment(AssignmentSource source) {
+        assignmentCounts[source.ordinal()].increment();
+    }
+
+    /**
+     * Requests routed per variant id since startup.
+     */
+    Map<String, LongAdder> variantCounts() {
+        return variantCounts;
+    }
+
+    /**
+     * Requests routed per endpoint URL since startup.
+     */
+    Map<String, LongAdder> endpointCounts() {
+        return endpointCounts;
+    }
+
+    /**
+     * Drop the counts and meters of domains, tests, variants and endpoints that are no longer in
+     * the routing snapshot. A request routed just before the change may register its counter again; it is
+     * dropped with the next change.
+     */
+    @EventListener
+    public void onRoutingConfigChanged(RoutingConfigChangedEvent event) {
+        RoutingSnapshot snapshot = routingTable.current();
+        remove(domainCounts, host -> snapshot.findDomain(host) == null, "abra.routing.domain.requests", "domain");
+        remove(testCounts, id -> snapshot.findOwningDomainId(RoutingEntityType.TEST, id) == null,
+            "abra.routing.test.requests", "test");
+        remove(variantCounts, id -> snapshot.findOwningDomainId(RoutingEntityType.VARIANT, id) == null,
+            "abra.routing.variant.requests", "variant");
+        remove(endpointCounts, url -> snapshot.findOwningDomainId(RoutingEntityType.ENDPOINT, url) == null,
+            "abra.routing.endpoint.requests", "endpoint");
+    }
+
+    private void remove(Map<String, LongAdder> counts, Predicate<String> removed, String name, String tag) {
+        counts.keySet().removeIf(key -> {
+            if (!removed.test(key)) {
+                return false;
+            }
+            meterRegistry.find(name).tag(tag, key).meters().forEach(meterRegistry::remove);
+            return true;
+        });
+    }
+
+    private static LongAdder counter(Map<String, LongAdder> counts, String key, Function<String, LongAdder> create) {
+        LongAdder count = counts.get(key);
+        return count != null ? count : counts.computeIfAbsent(key, create);
+    }
+
+    private LongAdder register(String name, String description, Tags tags, LongAdder count) {
+        FunctionCounter.builder(name, count, LongAdder::sum)
+            .description(description)
+            .tags(tags)
+            .register(meterRegistry);
+        return count;
+    }
+}
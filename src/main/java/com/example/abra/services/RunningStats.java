@@ -0,0 +1,77 @@
+package com.example.abra.services;
+
+/**
+ * Count, mean and variance of a stream of values in one pass (Welford), mergeable with
+ * another accumulator (Chan et al.) so partial results from different threads or batches
+ * combine exactly. Not thread-safe.
+ */
+public final class RunningStats {
+
+    private long count;
+    private double mean;
+    private double sumOfSquaredDeviations;
+
+    /**
+     * Accumulator with the given count, sum and sum of squares of values, as stored in
+     * {@code conversion_aggregate}. Less precise than adding the values one by one when the
+     * variance is tiny compared to the mean.
+     */
+    public static RunningStats of(long count, double sum, double sumOfSquares) {
+        RunningStats stats = new RunningStats();
+        if (count > 0) {
+            stats.count = count;
+            stats.mean = sum / count;
+            stats.sumOfSquaredDeviations = Math.max(sumOfSquares - sum * stats.mean, 0);
+        }
+        return stats;
+    }
+
+    public void add(double value) {
+        count++;
+        double delta = value - mean;
+        mean += delta / count;
+        sumOfSquaredDeviations += delta * (value - mean);
+    }
+
+    public void merge(RunningStats other) {
+        if (other.count == 0) {
+            return;
+        }
+        if (count == 0) {
+            count = other.count;
+            mean = other.mean;
+            sumOfSquaredDeviations = other.sumOfSquaredDeviations;
+            return;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        mean += delta * other.count / total;
+        sumOfSquaredDeviations += other.sumOfSquaredDeviations + delta * delta * count * other.count / total;
+        count = total;
+    }
+
+    public RunningStats copy() {
+        RunningStats copy = new RunningStats();
+        copy.merge(this);
+        return copy;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getSum() {
+        return mean * count;
+    }
+
+    /**
+     * Sample variance, 0 with fewer than two values.
+     */
+    public double getVariance() {
+        return count < 2 ? 0 : sumOfSquaredDeviations / (count - 1);
+    }
+}
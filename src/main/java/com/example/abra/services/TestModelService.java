@@ -2,9 +2,10 @@ package com.example.abra.services;
 
 import com.example.abra.models.TestModel;
 import com.example.abra.repositories.TestModelRepository;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+
+import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
@@ -14,6 +15,7 @@ import org.springframework.stereotype.Service;
 public class TestModelService {
 
     private final TestModelRepository testModelRepository;
+    private final RoutingConfigVersionService routingConfigVersionService;
 
     public List<TestModel> findAllTests() {
         return testModelRepository.findAll();
@@ -29,53 +31,26 @@ public class TestModelService {
         );
     }
 
-    /**
-     * Finds the best matching test for a given domain and request path.
-     * Prioritizes more specific paths:
-     * 1. Exact match has highest priority
-     * 2. Longest prefix match if no exact match
-     *
-     * @param domainId The domain ID
-     * @param requestPath The requested path (e.g., "/cart/details")
-     * @return Optional containing the best matching test, or empty if no match
-     */
-
-    public Optional<TestModel> findBestMatchingTest(
-        @NonNull String domainId,
-        @NonNull String requestPath
-    ) {
-        List<TestModel> allTests =
-            testModelRepository.findAllByDomainIdAndIsActiveTrue(domainId);
-
-        return allTests
-            .stream()
-            .filter(test -> {
-                String subpath = test.getSubpath();
-                if (subpath == null || subpath.isEmpty()) {
-                    return false;
-                }
-                return (
-                    requestPath.equals(subpath) ||
-                    requestPath.startsWith(subpath + "/") ||
-                    (subpath.equals("/") && !requestPath.isEmpty())
-                );
-            })
-            .max(Comparator.comparingInt(test -> test.getSubpath().length()));
-    }
-
     public Optional<TestModel> findByTestId(@NonNull String id) {
         return testModelRepository.findById(id);
     }
 
+    @Transactional
     public TestModel addTest(@NonNull TestModel testModel) {
-        return testModelRepository.save(testModel);
+        TestModel saved = testModelRepository.save(testModel);
+        routingConfigVersionService.bump();
+        return saved;
     }
 
+    @Transactional
     public void updateTest(@NonNull TestModel updated) {
         testModelRepository.save(updated);
+        routingConfigVersionService.bump();
     }
 
+    @Transactional
     public void deleteTestById(@NonNull String id) {
         testModelRepository.deleteById(id);
+        routingConfigVersionService.bump();
     }
 }
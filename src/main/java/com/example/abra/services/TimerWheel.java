@@ -0,0 +1,89 @@
+package com.example.abra.services;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timer wheel: scheduling and expiring an item cost O(1) regardless of how many items
+ * are pending, and items due at different times land in different slots instead of one burst.
+ * <p>
+ * Time is divided into ticks of fixed length; an item due in more ticks than the wheel has
+ * slots stays in its slot for additional rotations. Not thread-safe: callers confine the
+ * wheel to one thread or guard it with a lock.
+ */
+final class TimerWheel<T> {
+
+    private final long tickNanos;
+    private final List<Entry<T>>[] slots;
+    private final int mask;
+    private long currentTick = Long.MIN_VALUE;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(long tickNanos, int slotCount) {
+        if (tickNanos <= 0 || Integer.bitCount(slotCount) != 1) {
+            throw new IllegalArgumentException("tickNanos must be positive and slotCount a power of two");
+        }
+        this.tickNanos = tickNanos;
+        this.slots = new List[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slots[i] = new ArrayList<>();
+        }
+        this.mask = slotCount - 1;
+    }
+
+    /**
+     * Schedule the item to become due {@code delayNanos} after {@code nowNanos},
+     * rounded up to the next tick.
+     */
+    void schedule(T item, long nowNanos, long delayNanos) {
+        long now = tickOf(nowNanos);
+        if (currentTick == Long.MIN_VALUE) {
+            currentTick = now;
+        }
+        long deadline = Math.max(currentTick, now) + Math.max(1, (delayNanos + tickNanos - 1) / tickNanos);
+        slots[(int) (deadline & mask)].add(new Entry<>(item, deadline));
+        size++;
+    }
+
+    /**
+     * Advance the wheel to {@code nowNanos} and hand every item that became due to {@code due}.
+     * Items may be scheduled again from within the callback.
+     */
+    void advance(long nowNanos, Consumer<T> due) {
+        long target = tickOf(nowNanos);
+        if (currentTick == Long.MIN_VALUE || size == 0) {
+            currentTick = target;
+            return;
+        }
+        // After a pause longer than a rotation, every slot only needs one visit
+        long first = Math.max(currentTick + 1, target - mask);
+        List<T> expired = new ArrayList<>();
+        for (long tick = first; tick <= target; tick++) {
+            Iterator<Entry<T>> it = slots[(int) (tick & mask)].iterator();
+            while (it.hasNext()) {
+                Entry<T> entry = it.next();
+                if (entry.deadline <= target) {
+                    it.remove();
+                    size--;
+                    expired.add(entry.item);
+                }
+            }
+        }
+        currentTick = target;
+        expired.forEach(due);
+    }
+
+    int size() {
+        return size;
+    }
+
+    private long tickOf(long nanos) {
+        return Math.floorDiv(nanos, tickNanos);
+    }
+
+    private record Entry<T>(T item, long deadline) {
+    }
+}
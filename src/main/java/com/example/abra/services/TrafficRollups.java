@@ -0,0 +1,294 @@
+package com.example.abra.services;
+
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Request counts per variant and per endpoint at 1 second, 1 minute and 1 hour resolution.
+ * <p>
+ * Every second the requests counted by {@link RoutingMetrics} since the previous tick are added
+ * to the current bucket of all three resolutions of each series, so the request path does no
+ * extra work and the coarser resolutions are exact sums of the finer ones. Each resolution keeps
+ * a fixed number of buckets ({@code abra.rollups.*-buckets}) in a {@link RollupRing}, so raw
+ * per-second data is only kept for a short window while hourly counts go back much further.
+ * <p>
+ * Counts live in memory; at startup the history before the restart is rebuilt in the background
+ * from the {@link DecisionLog}, if it is enabled and {@code abra.rollups.restore} is set. Only
+ * as much history as the log keeps ({@code abra.decision-log.max-segments} segments of at most
+ * {@code abra.decision-log.roll-interval-ms}) can come back, so older hourly buckets start empty
+ * after a restart.
+ * <p>
+ * The series of a variant or endpoint is dropped once it is removed from the routing
+ * configuration, and not collected again while {@link RoutingMetrics} still holds its count.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TrafficRollups {
+
+    public static final String VARIANT = "variant";
+    public static final String ENDPOINT = "endpoint";
+
+    public enum Resolution {
+        SECOND(1),
+        MINUTE(60),
+        HOUR(3600);
+
+        private final int seconds;
+
+        Resolution(int seconds) {
+            this.seconds = seconds;
+        }
+
+        public int getSeconds() {
+            return seconds;
+        }
+
+        /**
+         * @return the resolution with the given name (any case), or null
+         */
+        public static Resolution parse(String name) {
+            for (Resolution resolution : values()) {
+                if (resolution.name().equalsIgnoreCase(name)) {
+                    return resolution;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final RoutingMetrics routingMetrics;
+    private final DecisionLog decisionLog;
+    private final RoutingTable routingTable;
+
+    @Value("${abra.rollups.second-buckets:600}")
+    private int secondBuckets;
+
+    @Value("${abra.rollups.minute-buckets:1440}")
+    private int minuteBuckets;
+
+    @Value("${abra.rollups.hour-buckets:720}")
+    private int hourBuckets;
+
+    @Value("${abra.rollups.restore:true}")
+    private boolean restore;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Guarded by lock
+    private final Map<String, Series> variantSeries = new HashMap<>();
+    private final Map<String, Series> endpointSeries = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        Path directory = decisionLog.getDirectory();
+        if (!restore) {
+            return;
+        }
+        if (directory == null) {
+            log.info("Traffic rollups start empty: restoring them needs the decision log, which is disabled");
+            return;
+        }
+        long retentionMillis = decisionLog.getRetentionMillis();
+        if (TimeUnit.HOURS.toMillis(hourBuckets) > retentionMillis) {
+            log.info("Hourly traffic rollups keep {} h but the decision log only about {} h; "
+                + "older hours are empty after a restart", hourBuckets, TimeUnit.MILLISECONDS.toHours(retentionMillis));
+        }
+        // Routing counters start at zero now, so only earlier decisions are replayed
+        long startMillis = clock.getAsLong();
+        Thread.Builder threadBuilder = virtualThreads ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+        threadBuilder.name("traffic-rollup-restore").start(() -> restore(directory, startMillis));
+    }
+
+    /**
+     * Add the requests routed since the previous tick to the second that just ended.
+     */
+    @Scheduled(fixedRate = 1000)
+    public void tick() {
+        long second = TimeUnit.MILLISECONDS.toSeconds(clock.getAsLong()) - 1;
+        RoutingSnapshot snapshot = routingTable.current();
+        lock.lock();
+        try {
+            collect(routingMetrics.variantCounts(), variantSeries, second, snapshot, RoutingEntityType.VARIANT);
+            collect(routingMetrics.endpointCounts(), endpointSeries, second, snapshot, RoutingEntityType.ENDPOINT);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drop the series of variants and endpoints that are no longer in the routing snapshot.
+     */
+    @EventListener
+    public void onRoutingConfigChanged(RoutingConfigChangedEvent event) {
+        RoutingSnapshot snapshot = routingTable.current();
+        lock.lock();
+        try {
+            variantSeries.keySet().removeIf(id -> !routes(snapshot, RoutingEntityType.VARIANT, id));
+            endpointSeries.keySet().removeIf(url -> !routes(snapshot, RoutingEntityType.ENDPOINT, url));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The latest {@code points} buckets of one resolution for every variant or endpoint, or only
+     * the one with the given id. The last bucket of a minute or hour series is still filling up.
+     *
+     * @param scope {@link #VARIANT} or {@link #ENDPOINT}
+     * @return the series ordered by id, or null if the scope does not exist
+     */
+    public List<TrafficSeries> query(String scope, String id, Resolution resolution, int points) {
+        Map<String, Series> series = seriesOf(scope);
+        if (series == null) {
+            return null;
+        }
+        long endSecond = TimeUnit.MILLISECONDS.toSeconds(clock.getAsLong()) - 1;
+        int step = resolution.getSeconds();
+        List<TrafficSeries> result = new ArrayList<>();
+        lock.lock();
+        try {
+            Map<String, Series> selected = id == null ? new TreeMap<>(series)
+                : series.containsKey(id) ? Map.of(id, series.get(id)) : Map.of();
+            selected.forEach((key, value) -> {
+                RollupRing ring = value.ring(resolution);
+                int count = Math.max(1, Math.min(points, ring.capacity()));
+                long[] counts = ring.read(endSecond, count);
+                double[] rates = new double[counts.length];
+                for (int i = 0; i < counts.length; i++) {
+                    rates[i] = counts[i] / (double) step;
+                }
+                long fromSecond = (Math.floorDiv(endSecond, step) - count + 1) * step;
+                result.add(new TrafficSeries(key, resolution, fromSecond, step, counts, rates));
+            });
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    private void restore(Path directory, long toMillis) {
+        long fromMillis = toMillis - Math.min(TimeUnit.HOURS.toMillis(hourBuckets), decisionLog.getRetentionMillis());
+        try {
+            long restored = DecisionLogReader.scan(directory, fromMillis, toMillis, decision -> {
+                long second = TimeUnit.MILLISECONDS.toSeconds(decision.timestampMillis());
+                RoutingSnapshot snapshot = routingTable.current();
+                lock.lock();
+                try {
+                    // Variants and endpoints removed since are not brought back
+                    if (routes(snapshot, RoutingEntityType.VARIANT, decision.variantId())) {
+                        series(variantSeries, decision.variantId()).add(second, 1);
+                    }
+                    if (routes(snapshot, RoutingEntityType.ENDPOINT, decision.endpointUrl())) {
+                        series(endpointSeries, decision.endpointUrl()).add(second, 1);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            });
+            log.info("Restored traffic rollups from {} logged routing decisions", restored);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to restore traffic rollups from the decision log", e);
+        }
+    }
+
+    private void collect(Map<String, LongAdder> totals, Map<String, Series> series, long second,
+            RoutingSnapshot snapshot, RoutingEntityType type) {
+        totals.forEach((key, total) -> {
+            // Removed, but RoutingMetrics may not have dropped the count yet
+            if (!routes(snapshot, type, key)) {
+                return;
+            }
+            Series target = series(series, key);
+            long sum = total.sum();
+            long delta = sum - target.lastTotal;
+            target.lastTotal = sum;
+            if (delta > 0) {
+                target.add(second, delta);
+            }
+        });
+    }
+
+    private static boolean routes(RoutingSnapshot snapshot, RoutingEntityType type, String id) {
+        return snapshot.findOwningDomainId(type, id) != null;
+    }
+
+    private Series series(Map<String, Series> series, String key) {
+        return series.computeIfAbsent(key, k -> new Series(secondBuckets, minuteBuckets, hourBuckets));
+    }
+
+    private Map<String, Series> seriesOf(String scope) {
+        return switch (scope.toLowerCase(Locale.ROOT)) {
+            case VARIANT -> variantSeries;
+            case ENDPOINT -> endpointSeries;
+            default -> null;
+        };
+    }
+
+    private static final class Series {
+
+        private final RollupRing seconds;
+        private final RollupRing minutes;
+        private final RollupRing hours;
+
+        /**
+         * Routing counter value at the previous tick.
+         */
+        private long lastTotal;
+
+        Series(int secondBuckets, int minuteBuckets, int hourBuckets) {
+            seconds = new RollupRing(secondBuckets, Resolution.SECOND.getSeconds());
+            minutes = new RollupRing(minuteBuckets, Resolution.MINUTE.getSeconds());
+            hours = new RollupRing(hourBuckets, Resolution.HOUR.getSeconds());
+        }
+
+        void add(long epochSecond, long count) {
+            seconds.add(epochSecond, count);
+            minutes.add(epochSecond, count);
+            hours.add(epochSecond, count);
+        }
+
+        RollupRing ring(Resolution resolution) {
+            return switch (resolution) {
+                case SECOND -> seconds;
+                case MINUTE -> minutes;
+                case HOUR -> hours;
+            };
+        }
+    }
+
+    /**
+     * @param fromEpochSecond start of the first bucket
+     * @param counts requests per bucket, oldest first
+     * @param rates average requests per second in each bucket
+     */
+    public record TrafficSeries(
+            String id, Resolution resolution, long fromEpochSecond, int stepSeconds, long[] counts, double[] rates) {
+    }
+}
@@ -4,6 +4,8 @@ import com.example.abra.models.VariantModel;
 import com.example.abra.repositories.VariantModelRepository;
 import java.util.List;
 import java.util.Optional;
+
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Service;
@@ -13,6 +15,7 @@ import org.springframework.stereotype.Service;
 public class VariantModelService {
 
     private final VariantModelRepository variantModelRepository;
+    private final RoutingConfigVersionService routingConfigVersionService;
 
     public List<VariantModel> findAllVariants() {
         return variantModelRepository.findAll();
@@ -26,15 +29,22 @@ public class VariantModelService {
         return variantModelRepository.findById(id);
     }
 
+    @Transactional
     public VariantModel addVariant(@NonNull VariantModel variantModel) {
-        return variantModelRepository.save(variantModel);
+        VariantModel saved = variantModelRepository.save(variantModel);
+        routingConfigVersionService.bump();
+        return saved;
     }
 
+    @Transactional
     public void updateVariant(@NonNull VariantModel updated) {
         variantModelRepository.save(updated);
+        routingConfigVersionService.bump();
     }
 
+    @Transactional
     public void deleteVariantById(@NonNull String id) {
         variantModelRepository.deleteById(id);
+        routingConfigVersionService.bump();
     }
 }
@@ -0,0 +1,74 @@
+package com.example.abra.controller;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class TrafficRingBufferTest {
+
+    @Test
+    void newBuffer_isAllZeros() {
+        assertArrayEquals(new double[4], new TrafficRingBuffer(4).snapshot());
+    }
+
+    @Test
+    void snapshot_isOldestFirstAndPaddedWithZeros() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(4);
+        buffer.add(1);
+        buffer.add(2);
+
+        assertArrayEquals(new double[] {0, 0, 1, 2}, buffer.snapshot());
+    }
+
+    @Test
+    void add_overwritesOldestWhenFull() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(3);
+        for (int i = 1; i <= 7; i++) {
+            buffer.add(i);
+        }
+
+        assertArrayEquals(new double[] {5, 6, 7}, buffer.snapshot());
+    }
+
+    @Test
+    void snapshot_intoTargetOfWrongLength_isRejected() {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(3);
+
+        assertThrows(IllegalArgumentException.class, () -> buffer.snapshot(new double[2]));
+    }
+
+    @Test
+    void concurrentReaders_neverSeeTornWindow() throws InterruptedException {
+        TrafficRingBuffer buffer = new TrafficRingBuffer(16);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<double[]> torn = new AtomicReference<>();
+
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                double[] window = new double[16];
+                while (running.get()) {
+                    buffer.snapshot(window);
+                    // The writer adds 1, 2, 3, ...: a consistent window of a full buffer is consecutive
+                    for (int i = 1; i < window.length; i++) {
+                        if (window[i - 1] != 0 && window[i] != window[i - 1] + 1) {
+                            torn.compareAndSet(null, window.clone());
+                        }
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        for (int i = 1; i <= 500_000; i++) {
+            buffer.add(i);
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertNull(torn.get());
+    }
+}
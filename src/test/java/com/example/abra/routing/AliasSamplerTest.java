@@ -0,0 +1,60 @@
+package com.example.abra.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class AliasSamplerTest {
+
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void sample_followsWeights() {
+        AliasSampler sampler = new AliasSampler(new int[] { 50, 30, 20 });
+
+        int[] counts = draw(sampler, new Random(1));
+
+        assertEquals(0.5, counts[0] / (double) SAMPLES, 0.01);
+        assertEquals(0.3, counts[1] / (double) SAMPLES, 0.01);
+        assertEquals(0.2, counts[2] / (double) SAMPLES, 0.01);
+    }
+
+    @Test
+    void sample_neverPicksZeroWeight() {
+        AliasSampler sampler = new AliasSampler(new int[] { 0, 7, -3, 1 });
+
+        int[] counts = draw(sampler, new Random(2));
+
+        assertEquals(0, counts[0]);
+        assertEquals(0, counts[2]);
+        assertEquals(0.875, counts[1] / (double) SAMPLES, 0.01);
+    }
+
+    @Test
+    void sample_followsFractionalWeights() {
+        AliasSampler sampler = new AliasSampler(new double[] { 0.5, 1.5, 0 });
+
+        int[] counts = draw(sampler, new Random(4));
+
+        assertEquals(0.25, counts[0] / (double) SAMPLES, 0.01);
+        assertEquals(0, counts[2]);
+    }
+
+    @Test
+    void sample_allZeroWeightsIsUniform() {
+        AliasSampler sampler = new AliasSampler(new int[] { 0, 0 });
+
+        int[] counts = draw(sampler, new Random(3));
+
+        assertEquals(0.5, counts[0] / (double) SAMPLES, 0.01);
+    }
+
+    private static int[] draw(AliasSampler sampler, Random random) {
+        int[] counts = new int[sampler.size()];
+        for (int i = 0; i < SAMPLES; i++) {
+            counts[sampler.sample(random)]++;
+        }
+        return counts;
+    }
+}
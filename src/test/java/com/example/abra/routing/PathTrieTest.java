@@ -0,0 +1,149 @@
+package com.example.abra.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.abra.models.TestModel;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PathTrieTest {
+
+    private static final String[] SEGMENTS = { "", "a", "b", "ab", "cart", "cart2" };
+
+    @Test
+    void find_exactMatch() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/cart", "cart");
+        trie.put("/checkout", "checkout");
+
+        assertEquals("cart", trie.find("/cart"));
+        assertEquals("checkout", trie.find("/checkout"));
+    }
+
+    @Test
+    void find_longestSegmentPrefixWins() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/cart", "cart");
+        trie.put("/cart/details", "details");
+
+        assertEquals("details", trie.find("/cart/details"));
+        assertEquals("details", trie.find("/cart/details/42"));
+        assertEquals("cart", trie.find("/cart/summary"));
+        assertEquals("cart", trie.find("/cart/"));
+    }
+
+    @Test
+    void find_prefixMustEndOnSegmentBoundary() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/cart", "cart");
+
+        assertNull(trie.find("/carts"));
+        assertNull(trie.find("/car"));
+    }
+
+    @Test
+    void find_rootFallsBackForUnmatchedPaths() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/", "root");
+        trie.put("/cart", "cart");
+
+        assertEquals("root", trie.find("/"));
+        assertEquals("root", trie.find("/checkout"));
+        assertEquals("cart", trie.find("/cart/details"));
+        assertNull(trie.find(""));
+    }
+
+    @Test
+    void find_trailingAndDuplicateSlashes() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/cart", "cart");
+        trie.put("/shop/", "shop");
+
+        assertEquals("cart", trie.find("/cart//details"));
+        assertNull(trie.find("//cart"));
+        assertEquals("shop", trie.find("/shop/"));
+        assertEquals("shop", trie.find("/shop//items"));
+        assertNull(trie.find("/shop"));
+        assertNull(trie.find("/shop/items"));
+    }
+
+    @Test
+    void find_noMatch() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/cart", "cart");
+
+        assertNull(trie.find("/checkout"));
+        assertNull(trie.find(""));
+        assertNull(new PathTrie<String>().find("/cart"));
+    }
+
+    @Test
+    void put_keepsFirstValueAndIgnoresEmptySubpaths() {
+        PathTrie<String> trie = new PathTrie<>();
+        trie.put("/cart", "first");
+        trie.put("/cart", "second");
+        trie.put("/", "root");
+        trie.put("/", "other root");
+        trie.put("", "empty");
+        trie.put(null, "null");
+
+        assertEquals("first", trie.find("/cart"));
+        assertEquals("root", trie.find("/x"));
+    }
+
+    @Test
+    void find_matchesLinearScanOnRandomTests() {
+        Random random = new Random(42);
+
+        for (int round = 0; round < 500; round++) {
+            List<TestModel> tests = new ArrayList<>();
+            PathTrie<TestModel> trie = new PathTrie<>();
+            int testCount = random.nextInt(8);
+            for (int i = 0; i < testCount; i++) {
+                TestModel test = new TestModel();
+                test.setTest_id("t" + i);
+                test.setSubpath(random.nextInt(10) == 0 ? "/" : randomPath(random, 3));
+                tests.add(test);
+                trie.put(test.getSubpath(), test);
+            }
+
+            for (int i = 0; i < 50; i++) {
+                String path = random.nextInt(20) == 0 ? "" : randomPath(random, 5);
+                TestModel expected = linearScan(tests, path);
+                assertSame(expected, trie.find(path), () -> "path " + path + " with subpaths "
+                    + tests.stream().map(TestModel::getSubpath).toList());
+            }
+        }
+    }
+
+    /**
+     * Reference matcher: the longest subpath that equals the path or is a segment prefix of it,
+     * with "/" matching any non-empty path.
+     */
+    private static TestModel linearScan(List<TestModel> tests, String requestPath) {
+        return tests.stream()
+            .filter(test -> {
+                String subpath = test.getSubpath();
+                if (subpath == null || subpath.isEmpty()) {
+                    return false;
+                }
+                return requestPath.equals(subpath)
+                    || requestPath.startsWith(subpath + "/")
+                    || (subpath.equals("/") && !requestPath.isEmpty());
+            })
+            .max(Comparator.comparingInt(test -> test.getSubpath().length()))
+            .orElse(null);
+    }
+
+    private static String randomPath(Random random, int maxDepth) {
+        StringBuilder path = new StringBuilder();
+        int depth = 1 + random.nextInt(maxDepth);
+        for (int i = 0; i < depth; i++) {
+            path.append('/').append(SEGMENTS[random.nextInt(SEGMENTS.length)]);
+        }
+        return path.toString();
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.abra.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.models.DomainModel;
+import com.example.abra.models.EndpointModel;
+import com.example.abra.models.TestModel;
+import com.example.abra.models.VariantModel;
+import com.example.abra.repositories.DomainModelRepository;
+import com.example.abra.repositories.EndpointModelRepository;
+import com.example.abra.repositories.TestModelRepository;
+import com.example.abra.repositories.VariantModelRepository;
+import com.example.abra.services.RoutingConfigVersionService;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RoutingSnapshotLoaderTest {
+
+    @Mock
+    private DomainModelRepository domainModelRepository;
+
+    @Mock
+    private TestModelRepository testModelRepository;
+
+    @Mock
+    private VariantModelRepository variantModelRepository;
+
+    @Mock
+    private EndpointModelRepository endpointModelRepository;
+
+    @Mock
+    private RoutingConfigVersionService routingConfigVersionService;
+
+    @InjectMocks
+    private RoutingSnapshotLoader loader;
+
+    @Test
+    void load_buildsTreeOfActiveEntities() {
+        DomainModel domain = new DomainModel();
+        domain.setDomain_id("d1");
+        domain.setHost("shop.example");
+        domain.setActive(true);
+
+        DomainModel inactiveDomain = new DomainModel();
+        inactiveDomain.setDomain_id("d2");
+        inactiveDomain.setHost("old.example");
+
+        TestModel test = new TestModel();
+        test.setTest_id("t1");
+        test.setName("Cart");
+        test.setSubpath("/cart");
+        test.setActive(true);
+        test.setDomainModel(domain);
+
+        VariantModel variant = new VariantModel();
+        variant.setVariant_id("v1");
+        variant.setName("A");
+        variant.setWeight(50);
+        variant.setActive(true);
+        variant.setTestModel(test);
+
+        VariantModel inactiveVariant = new VariantModel();
+        inactiveVariant.setVariant_id("v2");
+        inactiveVariant.setTestModel(test);
+
+        EndpointModel endpoint = new EndpointModel();
+        endpoint.setUrl("http://localhost:9001");
+        endpoint.setActive(true);
+        endpoint.setAlive(true);
+        endpoint.setVariantModel(variant);
+
+        when(domainModelRepository.findAll()).thenReturn(List.of(domain, inactiveDomain));
+        when(testModelRepository.findAll()).thenReturn(List.of(test));
+        when(variantModelRepository.findAll()).thenReturn(List.of(variant, inactiveVariant));
+        when(endpointModelRepository.findAll()).thenReturn(List.of(endpoint));
+        when(routingConfigVersionService.currentVersion()).thenReturn(42L);
+
+        RoutingSnapshot snapshot = loader.load(7);
+
+        assertEquals(7, snapshot.getVersion());
+        assertEquals(42, snapshot.getConfigVersion());
+        assertNull(snapshot.findDomain("old.example"));
+
+        DomainRoute domainRoute = snapshot.findDomain("shop.example");
+        assertNotNull(domainRoute);
+        TestRoute testRoute = domainRoute.findBestMatchingTest("/cart/items");
+        assertNotNull(testRoute);
+        assertEquals(1, testRoute.getVariants().size());
+        assertNull(testRoute.findVariant("v2"));
+
+        VariantRoute variantRoute = testRoute.findVariant("v1");
+        assertEquals(50, variantRoute.getWeight());
+        assertEquals("http://localhost:9001", variantRoute.getEndpoints().get(0).getUrl());
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.abra.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.services.RoutingConfigVersionService;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class RoutingTableTest {
+
+    @Mock
+    private RoutingSnapshotLoader loader;
+
+    @Mock
+    private RoutingConfigVersionService routingConfigVersionService;
+
+    @InjectMocks
+    private RoutingTable routingTable;
+
+    private DomainRoute shop;
+    private DomainRoute blog;
+
+    @BeforeEach
+    void setUp() {
+        shop = domain("d1", "shop.example", "t1", "v1");
+        blog = domain("d2", "blog.example", "t2", "v2");
+        when(loader.load(anyLong())).thenReturn(new RoutingSnapshot(1, 5, Map.of(
+            shop.getHost(), shop,
+            blog.getHost(), blog)));
+        routingTable.init();
+    }
+
+    @Test
+    void variantChange_rebuildsOnlyOwningDomain() {
+        DomainRoute rebuiltShop = domain("d1", "shop.example", "t1", "v1");
+        when(loader.findOwningDomainId(RoutingEntityType.VARIANT, "v1")).thenReturn(Optional.of("d1"));
+        when(loader.loadDomain("d1")).thenReturn(Optional.of(rebuiltShop));
+
+        routingTable.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.VARIANT, "v1"));
+
+        RoutingSnapshot snapshot = routingTable.current();
+        assertEquals(2, snapshot.getVersion());
+        assertSame(rebuiltShop, snapshot.findDomain("shop.example"));
+        assertSame(blog, snapshot.findDomain("blog.example"));
+        verify(loader, never()).loadDomain("d2");
+        verify(loader, times(1)).load(anyLong());
+    }
+
+    @Test
+    void deletedTest_rebuildsPreviousOwnerFromSnapshot() {
+        DomainRoute blogWithoutTest = new DomainRoute("d2", "blog.example", null, List.of());
+        when(loader.findOwningDomainId(RoutingEntityType.TEST, "t2")).thenReturn(Optional.empty());
+        when(loader.loadDomain("d2")).thenReturn(Optional.of(blogWithoutTest));
+
+        routingTable.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.TEST, "t2"));
+
+        assertNull(routingTable.current().findDomain("blog.example").findBestMatchingTest("/t2"));
+    }
+
+    @Test
+    void domainHostChange_movesDomainToNewHost() {
+        DomainRoute renamed = domain("d1", "store.example", "t1", "v1");
+        when(loader.findOwningDomainId(RoutingEntityType.DOMAIN, "d1")).thenReturn(Optional.of("d1"));
+        when(loader.loadDomain("d1")).thenReturn(Optional.of(renamed));
+
+        routingTable.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.DOMAIN, "d1"));
+
+        assertNull(routingTable.current().findDomain("shop.example"));
+        assertSame(renamed, routingTable.current().findDomain("store.example"));
+    }
+
+    @Test
+    void unscopedEvent_reloadsEverything() {
+        routingTable.onRoutingConfigChanged(new RoutingConfigChangedEvent(this));
+
+        verify(loader, times(2)).load(anyLong());
+    }
+
+    @Test
+    void pollConfigVersion_unchangedVersion_doesNothing() {
+        when(routingConfigVersionService.currentVersion()).thenReturn(5L);
+
+        routingTable.pollConfigVersion();
+
+        verify(loader, times(1)).load(anyLong());
+        verify(routingConfigVersionService, never()).consumeLocalVersion(anyLong());
+    }
+
+    @Test
+    void pollConfigVersion_localWrites_advanceWithoutReload() {
+        when(routingConfigVersionService.currentVersion()).thenReturn(7L);
+        when(routingConfigVersionService.consumeLocalVersion(6)).thenReturn(true);
+        when(routingConfigVersionService.consumeLocalVersion(7)).thenReturn(true);
+
+        routingTable.pollConfigVersion();
+
+        assertEquals(7, routingTable.current().getConfigVersion());
+        assertSame(shop, routingTable.current().findDomain("shop.example"));
+        verify(loader, times(1)).load(anyLong());
+    }
+
+    @Test
+    void pollConfigVersion_remoteWrite_reloadsEverything() {
+        when(routingConfigVersionService.currentVersion()).thenReturn(7L);
+        when(routingConfigVersionService.consumeLocalVersion(6)).thenReturn(true);
+        when(routingConfigVersionService.consumeLocalVersion(7)).thenReturn(false);
+        when(loader.load(anyLong())).thenReturn(new RoutingSnapshot(2, 7, Map.of()));
+
+        routingTable.pollConfigVersion();
+
+        assertEquals(7, routingTable.current().getConfigVersion());
+        verify(routingConfigVersionService).discardLocalVersionsUpTo(7);
+    }
+
+    private static DomainRoute domain(String domainId, String host, String testId, String variantId) {
+        VariantRoute variant = new VariantRoute(variantId, variantId, 100, null,
+            List.of(new EndpointRoute("http://" + variantId, true, true)));
+        TestRoute test = new TestRoute(testId, testId, "/" + testId, List.of(variant));
+        return new DomainRoute(domainId, host, null, List.of(test));
+    }
+}
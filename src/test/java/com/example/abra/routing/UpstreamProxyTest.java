@@ -0,0 +1,174 @@
+package com.example.abra.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.sun.net.httpserver.HttpServer;
+import jakarta.servlet.ServletOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.DelegatingServletOutputStream;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class UpstreamProxyTest {
+
+    private HttpServer upstream;
+    private UpstreamProxy proxy;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        upstream = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        upstream.createContext("/echo", exchange -> {
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            exchange.getResponseHeaders().add("X-Upstream-Path", exchange.getRequestURI().toString());
+            exchange.getResponseHeaders().add("X-Seen-Forwarded-For",
+                exchange.getRequestHeaders().getFirst("X-Forwarded-For"));
+            exchange.sendResponseHeaders(201, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        upstream.createContext("/moved", exchange -> {
+            exchange.getResponseHeaders().add("Location", baseUrl() + "/echo?x=1");
+            exchange.getResponseHeaders().add("Content-Location", baseUrl() + "/moved");
+            exchange.getResponseHeaders().add("Link", "<" + baseUrl() + "/echo>");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        upstream.createContext("/elsewhere", exchange -> {
+            exchange.getResponseHeaders().add("Location", "https://login.example/?next=" + baseUrl());
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        upstream.createContext("/truncated", exchange -> {
+            // Promise more bytes than are sent, then drop the connection
+            exchange.sendResponseHeaders(200, 1000);
+            exchange.getResponseBody().write("partial".getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseBody().flush();
+            exchange.close();
+        });
+        upstream.start();
+
+        proxy = new UpstreamProxy();
+        ReflectionTestUtils.setField(proxy, "connectTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(proxy, "responseTimeoutMs", 5000L);
+        proxy.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void forward_streamsBodyAndHeadersBothWays() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/echo");
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("Connection", "keep-alive");
+        request.setContent("hello".getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        int status = proxy.forward(request, response, baseUrl(), baseUrl() + "/echo?x=1");
+
+        assertEquals(201, status);
+        assertEquals(201, response.getStatus());
+        assertEquals("hello", response.getContentAsString());
+        assertEquals("/echo?x=1", response.getHeader("X-Upstream-Path"));
+        assertEquals("10.0.0.1", response.getHeader("X-Seen-Forwarded-For"));
+    }
+
+    @Test
+    void forward_unreachableUpstreamAnswersBadGateway() throws IOException {
+        int port = upstream.getAddress().getPort();
+        upstream.stop(0);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        int status = proxy.forward(new MockHttpServletRequest("GET", "/echo"), response,
+            "http://localhost:" + port, "http://localhost:" + port + "/echo");
+
+        assertEquals(502, status);
+        assertEquals(502, response.getStatus());
+    }
+
+    @Test
+    void forward_rewritesLocationsIntoTheEndpointToThePublicHost() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/moved");
+        request.addHeader("Host", "shop.example");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        int status = proxy.forward(request, response, baseUrl() + "/", baseUrl() + "/moved");
+
+        assertEquals(302, status);
+        assertEquals("http://shop.example/echo?x=1", response.getHeader("Location"));
+        assertEquals("http://shop.example/moved", response.getHeader("Content-Location"));
+        assertEquals("<" + baseUrl() + "/echo>", response.getHeader("Link"));
+    }
+
+    @Test
+    void forward_keepsLocationsOutsideTheEndpoint() throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/elsewhere");
+        request.addHeader("Host", "shop.example");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        proxy.forward(request, response, baseUrl(), baseUrl() + "/elsewhere");
+
+        assertEquals("https://login.example/?next=" + baseUrl(), response.getHeader("Location"));
+    }
+
+    @Test
+    void rewriteLocation_matchesOnlyTheWholeEndpointBase() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setScheme("https");
+        request.addHeader("Host", "shop.example");
+
+        assertEquals("https://shop.example/a", UpstreamProxy.rewriteLocation("http://app:8080/a", "http://app:8080", request));
+        assertEquals("https://shop.example", UpstreamProxy.rewriteLocation("http://app:8080", "http://app:8080/", request));
+        assertEquals("https://shop.example?q=1", UpstreamProxy.rewriteLocation("http://APP:8080?q=1", "http://app:8080", request));
+        assertEquals("http://app:80801/a", UpstreamProxy.rewriteLocation("http://app:80801/a", "http://app:8080", request));
+        assertEquals("/relative", UpstreamProxy.rewriteLocation("/relative", "http://app:8080", request));
+    }
+
+    @Test
+    void forward_upstreamFailingMidBodyIsReportedAsBadGateway() throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        int status = proxy.forward(new MockHttpServletRequest("GET", "/truncated"), response,
+            baseUrl(), baseUrl() + "/truncated");
+
+        assertEquals(502, status);
+        assertEquals(200, response.getStatus());
+    }
+
+    @Test
+    void forward_clientWriteFailureIsThrown() {
+        MockHttpServletResponse response = new MockHttpServletResponse() {
+            @Override
+            public ServletOutputStream getOutputStream() {
+                return new DelegatingServletOutputStream(new OutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        throw new IOException("Broken pipe");
+                    }
+                });
+            }
+        };
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/echo");
+        request.setContent("hello".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> proxy.forward(request, response, baseUrl(), baseUrl() + "/echo"));
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + upstream.getAddress().getPort();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.abra.routing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.services.EndpointService;
+import com.example.abra.services.RoutingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class VariantAssignerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private VariantAssigner assigner;
+    private TestRoute test;
+    private final EndpointService endpointService = mock(EndpointService.class);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        assigner = new VariantAssigner(new RoutingMetrics(meterRegistry, mock(RoutingTable.class)), endpointService);
+        test = new TestRoute("t1", "Cart", "/cart", List.of(
+            new VariantRoute("v1", "A", 50, null, List.of()),
+            new VariantRoute("v2", "B", 30, null, List.of()),
+            new VariantRoute("v3", "C", 20, null, List.of())));
+    }
+
+    @Test
+    void cookieMode_setsCookieForNewVisitor() {
+        configure(AssignmentMode.COOKIE, "header:X-Abra-Visitor-Id");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        Assignment assignment = assigner.assign(new MockHttpServletRequest(), response, test);
+        VariantRoute variant = assignment.variant();
+
+        Cookie cookie = response.getCookie(VariantAssigner.VARIANT_COOKIE_PREFIX + "t1");
+        assertNotNull(cookie);
+        assertEquals(variant.getVariantId(), cookie.getValue());
+        assertEquals(AssignmentSource.NEW, assignment.source());
+        assertEquals(1, assignments("new"));
+    }
+
+    @Test
+    void cookieMode_honorsExistingCookie() {
+        configure(AssignmentMode.COOKIE, "header:X-Abra-Visitor-Id");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(VariantAssigner.VARIANT_COOKIE_PREFIX + "t1", "v3"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        VariantRoute variant = assigner.assign(request, response, test).variant();
+
+        assertEquals("v3", variant.getVariantId());
+        assertEquals(0, response.getCookies().length);
+        assertEquals(1, assignments("cookie"));
+        assertEquals(0, assignments("new"));
+    }
+
+    @Test
+    void capacityAware_assignsNewVisitorsByEffectiveWeights() {
+        configure(AssignmentMode.COOKIE, "header:X-Abra-Visitor-Id");
+        ReflectionTestUtils.setField(assigner, "capacityAware", true);
+        when(endpointService.effectiveWeights(test)).thenReturn(new TestRoute.EffectiveWeights(0, new double[] {0, 0, 1}));
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("v3", assigner.assign(new MockHttpServletRequest(), new MockHttpServletResponse(), test).variant().getVariantId());
+        }
+    }
+
+    @Test
+    void capacityAware_keepsStickyCookieAssignment() {
+        configure(AssignmentMode.COOKIE, "header:X-Abra-Visitor-Id");
+        ReflectionTestUtils.setField(assigner, "capacityAware", true);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setCookies(new Cookie(VariantAssigner.VARIANT_COOKIE_PREFIX + "t1", "v1"));
+
+        assertEquals("v1", assigner.assign(request, new MockHttpServletResponse(), test).variant().getVariantId());
+        verifyNoInteractions(endpointService);
+    }
+
+    @Test
+    void hashMode_isDeterministicAndWritesNoCookie() {
+        configure(AssignmentMode.HASH, "header:X-Abra-Visitor-Id");
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Abra-Visitor-Id", "visitor-42");
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        Assignment assignment = assigner.assign(request, first, test);
+        VariantRoute variant = assignment.variant();
+        assertEquals("visitor-42", assignment.visitorKey());
+        for (int i = 0; i < 10; i++) {
+            assertSame(variant, assigner.assign(request, new MockHttpServletResponse(), test).variant());
+        }
+
+        assertEquals(0, first.getCookies().length);
+        assertSame(test.variantForBucket(VariantAssigner.bucketOf("t1", "visitor-42")), variant);
+        assertEquals(11, assignments("hash"));
+    }
+
+    @Test
+    void hashMode_withoutVisitorKeyFallsBackToCookie() {
+        configure(AssignmentMode.HASH, "cookie:visitor");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assigner.assign(new MockHttpServletRequest(), response, test);
+
+        assertNotNull(response.getCookie(VariantAssigner.VARIANT_COOKIE_PREFIX + "t1"));
+    }
+
+    @Test
+    void hashMode_splitsVisitorsByWeight() {
+        configure(AssignmentMode.HASH, "client-ip");
+        int[] counts = new int[3];
+        for (int i = 0; i < 100_000; i++) {
+            String variantId = test.variantForBucket(VariantAssigner.bucketOf("t1", "visitor-" + i)).getVariantId();
+            counts[Integer.parseInt(variantId.substring(1)) - 1]++;
+        }
+
+        assertEquals(0.5, counts[0] / 100_000.0, 0.01);
+        assertEquals(0.3, counts[1] / 100_000.0, 0.01);
+        assertEquals(0.2, counts[2] / 100_000.0, 0.01);
+    }
+
+    @Test
+    void init_rejectsUnknownKeySource() {
+        ReflectionTestUtils.setField(assigner, "mode", AssignmentMode.HASH);
+        ReflectionTestUtils.setField(assigner, "hashKey", "session");
+
+        assertThrows(IllegalStateException.class, assigner::init);
+    }
+
+    private double assignments(String source) {
+        return meterRegistry.get("abra.routing.assignments").tag("source", source).functionCounter().count();
+    }
+
+    private void configure(AssignmentMode mode, String hashKey) {
+        ReflectionTestUtils.setField(assigner, "mode", mode);
+        ReflectionTestUtils.setField(assigner, "hashKey", hashKey);
+        assigner.init();
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.models.RoutingMode;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class ConversionAggregatorTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final RoutingTable routingTable = mock(RoutingTable.class);
+    private final ConversionAggregator aggregator = new ConversionAggregator(jdbcTemplate, routingTable);
+
+    private final EndpointRoute endpoint = new EndpointRoute("http://a", true, true);
+    private final VariantRoute variant1 = new VariantRoute("v1", "A", 50, null, List.of(endpoint));
+    private final VariantRoute variant2 = new VariantRoute("v2", "B", 50, null, List.of(endpoint));
+
+    @BeforeEach
+    void setUp() {
+        when(routingTable.current()).thenReturn(snapshotOf(variant1, variant2));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_writesOneRowPerVariantAndResets() {
+        aggregator.record("t1", "v1", 1.0);
+        aggregator.record("t1", "v1", 3.0);
+        aggregator.record("t1", "v2", 2.0);
+
+        aggregator.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture(), any(int[].class));
+        Object[] v1 = rows.getValue().stream().filter(row -> row[2].equals("v1")).findFirst().orElseThrow();
+        assertEquals("t1", v1[1]);
+        assertEquals(2L, v1[3]);
+        assertEquals(4.0, v1[4]);
+        assertEquals(10.0, v1[5]);
+        assertEquals(2, rows.getValue().size());
+
+        aggregator.flush();
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedFlush_isRetriedWithNextFlush() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class)))
+            .thenThrow(new DataAccessResourceFailureException("down"))
+            .thenReturn(new int[0]);
+        aggregator.record("t1", "v1", 1.0);
+
+        aggregator.flush();
+        aggregator.record("t1", "v1", 1.0);
+        aggregator.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), rows.capture(), any(int[].class));
+        assertEquals(2L, rows.getAllValues().get(1).get(0)[3]);
+    }
+
+    @Test
+    void unknownVariant_isNotAggregated() {
+        aggregator.record("t1", "no-such-variant", 1.0);
+
+        aggregator.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void configChange_dropsPendingConversionsOfRemovedVariants() {
+        aggregator.record("t1", "v1", 1.0);
+        aggregator.record("t1", "v2", 1.0);
+
+        when(routingTable.current()).thenReturn(snapshotOf(variant1));
+        aggregator.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.VARIANT, "v2"));
+        aggregator.record("t1", "v2", 1.0);
+        aggregator.flush();
+
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture(), any(int[].class));
+        assertEquals(List.of("v1"), rows.getValue().stream().map(row -> row[2]).toList());
+    }
+
+    private static RoutingSnapshot snapshotOf(VariantRoute... variants) {
+        DomainRoute domain = new DomainRoute("d1", "shop.example", RoutingMode.PROXY,
+            List.of(new TestRoute("t1", "Cart", "/cart", List.of(variants))));
+        return new RoutingSnapshot(1, 0, Map.of("shop.example", domain));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.models.RoutingMode;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantAssigner;
+import com.example.abra.routing.VariantRoute;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+class ConversionIngestionServiceTest {
+
+    private final VariantRoute variantA = new VariantRoute("v1", "A", 50, null, List.of());
+    private final VariantRoute variantB = new VariantRoute("v2", "B", 50, null, List.of());
+    private final TestRoute test = new TestRoute("t1", "Cart", "/cart", List.of(variantA, variantB));
+
+    private final RoutingTable routingTable = mock(RoutingTable.class);
+    private final VariantAssigner variantAssigner = mock(VariantAssigner.class);
+    private final ConversionAggregator aggregator = mock(ConversionAggregator.class);
+    private final ExperimentStatistics statistics = mock(ExperimentStatistics.class);
+    private ConversionIngestionService service;
+
+    @BeforeEach
+    void setUp() {
+        DomainRoute domain = new DomainRoute("d1", "shop.example", RoutingMode.PROXY, List.of(test));
+        when(routingTable.current()).thenReturn(new RoutingSnapshot(1, 1, Map.of("shop.example", domain)));
+        service = new ConversionIngestionService(
+            new ObjectMapper(), routingTable, variantAssigner, aggregator, statistics);
+    }
+
+    @Test
+    void ndjson_isIngestedByVariantOrVisitorKey() throws IOException {
+        when(variantAssigner.variantForVisitor(test, "visitor-7")).thenReturn(variantB);
+
+        ConversionIngestionService.IngestionResult result = ingest("""
+            {"testId":"t1","variantId":"v1"}
+            {"testId":"t1","visitorKey":"visitor-7","value":42.5}
+            {"testId":"t1","variantId":"gone"}
+            {"testId":"unknown","variantId":"v1"}
+            """);
+
+        assertEquals(new ConversionIngestionService.IngestionResult(2, 2, null), result);
+        verify(aggregator).record("t1", "v1", 1.0);
+        verify(aggregator).record("t1", "v2", 42.5);
+        verifyNoMoreInteractions(aggregator);
+    }
+
+    @Test
+    void jsonArray_isIngested() throws IOException {
+        ConversionIngestionService.IngestionResult result = ingest(
+            "[{\"testId\":\"t1\",\"variantId\":\"v1\"},{\"testId\":\"t1\",\"variantId\":\"v2\",\"value\":3}]");
+
+        assertEquals(2, result.accepted());
+        verify(aggregator).record("t1", "v1", 1.0);
+        verify(aggregator).record("t1", "v2", 3.0);
+    }
+
+    @Test
+    void batch_isMergedIntoStatisticsOncePerVariant() throws IOException {
+        ingest("""
+            {"testId":"t1","variantId":"v1","value":2}
+            {"testId":"t1","variantId":"v1","value":4}
+            {"testId":"t1","variantId":"v2"}
+            """);
+
+        ArgumentCaptor<RunningStats> v1 = ArgumentCaptor.forClass(RunningStats.class);
+        verify(statistics).recordConversions(eq("v1"), v1.capture());
+        verify(statistics).recordConversions(eq("v2"), any());
+        assertEquals(2, v1.getValue().getCount());
+        assertEquals(3.0, v1.getValue().getMean());
+    }
+
+    @Test
+    void visitorKeyWithoutHashMode_isRejected() throws IOException {
+        ConversionIngestionService.IngestionResult result = ingest("{\"testId\":\"t1\",\"visitorKey\":\"visitor-7\"}");
+
+        assertEquals(0, result.accepted());
+        assertEquals(1, result.rejected());
+    }
+
+    @Test
+    void malformedEvent_keepsEarlierEventsAndReportsError() throws IOException {
+        ConversionIngestionService.IngestionResult result = ingest("""
+            {"testId":"t1","variantId":"v1"}
+            {"testId":"t1",
+            """);
+
+        assertEquals(1, result.accepted());
+        assertNotNull(result.error());
+        verify(aggregator).record("t1", "v1", 1.0);
+    }
+
+    private ConversionIngestionService.IngestionResult ingest(String body) throws IOException {
+        return service.ingest(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.abra.models.RoutingMode;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class DecisionLogTest {
+
+    private final EndpointRoute endpoint = new EndpointRoute("http://a", true, true);
+    private final VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(endpoint));
+    private final TestRoute test = new TestRoute("t1", "Cart", "/cart", List.of(variant));
+    private final DomainRoute domain = new DomainRoute("d1", "shop.example", RoutingMode.PROXY, List.of(test));
+
+    @TempDir
+    Path directory;
+
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private DecisionLog decisionLog;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        decisionLog = newLog(4096);
+        decisionLog.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        decisionLog.shutdown();
+    }
+
+    @Test
+    void decisions_areReadBackWhileSegmentIsOpen() throws IOException {
+        decisionLog.append(domain, "/cart/items", test, variant, endpoint, 12_345);
+        decisionLog.append(domain, "/cart/ü", test, variant, endpoint, 1_000);
+
+        List<DecisionLog.Decision> decisions = replay();
+
+        assertEquals(List.of(
+            new DecisionLog.Decision(1_000_000, 12, RoutingMode.PROXY, "shop.example", "/cart/items", "t1", "v1", "http://a"),
+            new DecisionLog.Decision(1_000_000, 1, RoutingMode.PROXY, "shop.example", "/cart/ü", "t1", "v1", "http://a")),
+            decisions);
+    }
+
+    @Test
+    void fullSegment_rollsOverAndIsTruncated() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            decisionLog.append(domain, "/cart/" + i, test, variant, endpoint, 0);
+        }
+        decisionLog.shutdown();
+
+        List<Path> segments = DecisionLogReader.segments(directory);
+        assertTrue(segments.size() > 1, "segments: " + segments);
+        for (Path segment : segments) {
+            assertTrue(Files.size(segment) <= 4096);
+        }
+        List<DecisionLog.Decision> decisions = replay();
+        assertEquals(100, decisions.size());
+        assertEquals("/cart/99", decisions.get(99).path());
+    }
+
+    @Test
+    void unfinishedAppend_doesNotBlockClosingTheSegment() throws IOException {
+        decisionLog.append(domain, "/cart/items", test, variant, endpoint, 0);
+        // Claim space the way a stalled append would, without ever writing it
+        Object segment = ReflectionTestUtils.getField(decisionLog, "segment");
+        ReflectionTestUtils.invokeMethod(segment, "claim", 64);
+
+        long start = System.nanoTime();
+        decisionLog.shutdown();
+
+        assertTrue(System.nanoTime() - start < 5_000_000_000L);
+        assertEquals(1, replay().size());
+    }
+
+    @Test
+    void oldSegment_rollsOverByTime() throws IOException {
+        decisionLog.append(domain, "/cart", test, variant, endpoint, 0);
+        now.addAndGet(60_000);
+        decisionLog.rollIfDue();
+        decisionLog.append(domain, "/cart", test, variant, endpoint, 0);
+
+        assertEquals(2, DecisionLogReader.segments(directory).size());
+    }
+
+    @Test
+    void scan_skipsDecisionsOutsideTimeRange() throws IOException {
+        ReflectionTestUtils.setField(decisionLog, "maxSegments", 10);
+        for (int i = 0; i < 10; i++) {
+            decisionLog.append(domain, "/cart/" + i, test, variant, endpoint, 0);
+            now.addAndGet(20_000);
+        }
+
+        List<DecisionLog.Decision> decisions = new ArrayList<>();
+        long count = DecisionLogReader.scan(directory, 1_040_000, 1_100_000, decisions::add);
+
+        assertEquals(3, count);
+        assertEquals(List.of("/cart/2", "/cart/3", "/cart/4"), decisions.stream().map(DecisionLog.Decision::path).toList());
+    }
+
+    @Test
+    void oldestSegments_areDeletedAndNumberingContinuesAfterRestart() throws IOException {
+        for (int i = 0; i < 5; i++) {
+            decisionLog.append(domain, "/cart", test, variant, endpoint, 0);
+            now.addAndGet(60_000);
+        }
+        decisionLog.shutdown();
+        assertEquals(3, DecisionLogReader.segments(directory).size());
+
+        decisionLog = newLog(4096);
+        decisionLog.init();
+        decisionLog.append(domain, "/after-restart", test, variant, endpoint, 0);
+
+        List<Path> segments = DecisionLogReader.segments(directory);
+        assertEquals(3, segments.size());
+        assertEquals("00000000000000000005.dlog", segments.get(2).getFileName().toString());
+        assertEquals("/after-restart", replay().get(2).path());
+    }
+
+    @Test
+    void concurrentAppends_areAllLoggedAcrossRolls() throws Exception {
+        ReflectionTestUtils.setField(decisionLog, "maxSegments", 1_000);
+        int threads = 4;
+        int perThread = 500;
+        List<Thread> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String prefix = "/w" + t + "/";
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    decisionLog.append(domain, prefix + i, test, variant, endpoint, 0);
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        decisionLog.shutdown();
+
+        Set<String> paths = new HashSet<>();
+        replay().forEach(decision -> assertTrue(paths.add(decision.path()), decision.path()));
+        assertEquals(threads * perThread, paths.size());
+        assertTrue(DecisionLogReader.segments(directory).size() > 1);
+    }
+
+    @Test
+    void utf8Length_matchesStringEncodingAndCutsWholeCharacters() {
+        for (String value : List.of("", "/cart", "/cart/\u00fc", "/\u20ac", "/\uD83D\uDE00", "/\uD83D", "/\uDE00x")) {
+            assertEquals(value.getBytes(StandardCharsets.UTF_8).length, DecisionLog.utf8Length(value), value);
+        }
+        assertEquals(0, DecisionLog.utf8Length(null));
+        // 0xFFFF bytes hold 32767 two-byte characters plus one ASCII character
+        assertEquals(0xFFFF, DecisionLog.utf8Length("\u00fc".repeat(32_767) + "ab"));
+        assertEquals(0xFFFE, DecisionLog.utf8Length("a".repeat(0xFFFE) + "\u00fc"));
+    }
+
+    @Test
+    void longAndNonAsciiStrings_areReadBack() throws IOException {
+        decisionLog.shutdown();
+        decisionLog = newLog(1 << 20);
+        decisionLog.init();
+        String emoji = "/\uD83D\uDE00/\u20ac";
+        String longPath = "/" + "\u00fc".repeat(40_000);
+        decisionLog.append(domain, emoji, test, variant, endpoint, 0);
+        decisionLog.append(domain, longPath, test, variant, endpoint, 0);
+
+        List<DecisionLog.Decision> decisions = replay();
+
+        assertEquals(emoji, decisions.get(0).path());
+        // The slash and 32767 two-byte characters fill the 0xFFFF bytes
+        assertEquals(longPath.substring(0, 32_768), decisions.get(1).path());
+        assertEquals("http://a", decisions.get(1).endpointUrl());
+    }
+
+    @Test
+    void disabledLog_writesNothing() throws IOException {
+        DecisionLog disabled = newLog(4096);
+        ReflectionTestUtils.setField(disabled, "enabled", false);
+        ReflectionTestUtils.setField(disabled, "directory", directory.resolve("disabled").toString());
+        disabled.init();
+
+        disabled.append(domain, "/cart", test, variant, endpoint, 0);
+
+        assertFalse(Files.exists(directory.resolve("disabled")));
+    }
+
+    private DecisionLog newLog(int segmentBytes) {
+        DecisionLog log = new DecisionLog(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(log, "enabled", true);
+        ReflectionTestUtils.setField(log, "directory", directory.toString());
+        ReflectionTestUtils.setField(log, "segmentBytes", segmentBytes);
+        ReflectionTestUtils.setField(log, "rollIntervalMs", 30_000L);
+        ReflectionTestUtils.setField(log, "maxSegments", 3);
+        ReflectionTestUtils.setField(log, "clock", (LongSupplier) now::get);
+        return log;
+    }
+
+    private List<DecisionLog.Decision> replay() throws IOException {
+        List<DecisionLog.Decision> decisions = new ArrayList<>();
+        DecisionLogReader.replay(directory, decisions::add);
+        return decisions;
+    }
+}
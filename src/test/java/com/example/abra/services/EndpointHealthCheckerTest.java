@@ -0,0 +1,272 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.models.EndpointModel;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class EndpointHealthCheckerTest {
+
+    @Mock
+    private EndpointModelService endpointModelService;
+
+    @Spy
+    private EndpointHealthRegistry healthRegistry = new EndpointHealthRegistry();
+
+    @Mock
+    private RoutingTable routingTable;
+
+    @InjectMocks
+    private EndpointHealthChecker checker;
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final AtomicInteger downHits = new AtomicInteger();
+    private HttpServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/ok", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.createContext("/down", exchange -> {
+            downHits.incrementAndGet();
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+
+        ReflectionTestUtils.setField(checker, "intervalMs", 1000L);
+        ReflectionTestUtils.setField(checker, "tickMs", 100L);
+        ReflectionTestUtils.setField(checker, "jitter", 0.0);
+        ReflectionTestUtils.setField(checker, "maxBackoffMs", 8000L);
+        ReflectionTestUtils.setField(checker, "healthyThreshold", 1);
+        ReflectionTestUtils.setField(checker, "unhealthyThreshold", 1);
+        ReflectionTestUtils.setField(checker, "timeoutMs", 300L);
+        ReflectionTestUtils.setField(checker, "maxConcurrency", 16);
+        ReflectionTestUtils.setField(checker, "passDeadlineMs", 5000L);
+        ReflectionTestUtils.setField(checker, "clock", (LongSupplier) now::get);
+        ReflectionTestUtils.setField(checker, "persistenceExecutor", (Executor) Runnable::run);
+        checker.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void dueEndpoints_areProbedConcurrentlyWithinOneTimeout() {
+        EndpointModel ok = endpoint(baseUrl() + "/ok", false);
+        List<EndpointModel> endpoints = new ArrayList<>(List.of(ok));
+        for (int i = 0; i < 10; i++) {
+            endpoints.add(endpoint(baseUrl() + "/slow?i=" + i, true));
+        }
+        when(endpointModelService.findAllEndpoints()).thenReturn(endpoints);
+
+        checker.performHealthChecks();
+        advanceMillis(1000);
+        long start = System.nanoTime();
+        checker.performHealthChecks();
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMs < 2000, "tick took " + elapsedMs + " ms");
+        ArgumentCaptor<List<String>> recovered = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<String>> failed = ArgumentCaptor.forClass(List.class);
+        verify(endpointModelService).updateEndpointHealth(recovered.capture(), failed.capture());
+        assertEquals(List.of(ok.getUrl()), recovered.getValue());
+        assertEquals(10, failed.getValue().size());
+        assertTrue(healthRegistry.isAlive(new EndpointRoute(ok.getUrl(), true, false)));
+        assertFalse(healthRegistry.isAlive(new EndpointRoute(baseUrl() + "/slow?i=0", true, true)));
+    }
+
+    @Test
+    void noTransitions_writeNothing() {
+        when(endpointModelService.findAllEndpoints())
+            .thenReturn(List.of(endpoint(baseUrl() + "/ok", true), endpoint("not a url", false)));
+
+        checker.performHealthChecks();
+        advanceMillis(1000);
+        checker.performHealthChecks();
+
+        verify(endpointModelService, never()).updateEndpointHealth(any(), any());
+    }
+
+    @Test
+    void probeThatCannotBeSent_countsAsFailedAndStaysScheduled() {
+        HttpClient failingClient = mock(HttpClient.class);
+        when(failingClient.sendAsync(any(), any())).thenThrow(new IllegalStateException("client closed"));
+        ReflectionTestUtils.setField(checker, "healthCheckClient", failingClient);
+        EndpointModel ok = endpoint(baseUrl() + "/ok", true);
+        when(endpointModelService.findAllEndpoints()).thenReturn(List.of(ok));
+
+        checker.performHealthChecks();
+        advanceMillis(1000);
+        checker.performHealthChecks();
+
+        assertFalse(healthRegistry.isAlive(new EndpointRoute(ok.getUrl(), true, true)));
+        verify(endpointModelService).updateEndpointHealth(List.of(), List.of(ok.getUrl()));
+
+        advanceMillis(2000);
+        checker.performHealthChecks();
+
+        verify(failingClient, times(2)).sendAsync(any(), any());
+    }
+
+    @Test
+    void transition_updatesRegistryBeforeDatabase() {
+        EndpointModel down = endpoint(baseUrl() + "/down", true);
+        when(endpointModelService.findAllEndpoints()).thenReturn(List.of(down));
+        long epoch = healthRegistry.getEpoch();
+
+        checker.performHealthChecks();
+        advanceMillis(1000);
+        checker.performHealthChecks();
+
+        assertTrue(healthRegistry.getEpoch() > epoch);
+        assertFalse(healthRegistry.isAlive(new EndpointRoute(down.getUrl(), true, true)));
+        verify(healthRegistry).update(down.getUrl(), false);
+        verify(endpointModelService).updateEndpointHealth(List.of(), List.of(down.getUrl()));
+    }
+
+    @Test
+    void endpointAddedAtRuntime_warmsUpFromItsChangeEvent() {
+        ReflectionTestUtils.setField(healthRegistry, "slowStartWindowMs", 30_000L);
+        ReflectionTestUtils.setField(healthRegistry, "slowStartMinWeight", 0.1);
+        ReflectionTestUtils.setField(healthRegistry, "clock", (LongSupplier) now::get);
+        EndpointModel existing = endpoint(baseUrl() + "/ok", true);
+        EndpointModel added = endpoint(baseUrl() + "/ok?added", true);
+        when(endpointModelService.findAllEndpoints()).thenReturn(List.of(existing))
+            .thenReturn(List.of(existing, added));
+        checker.performHealthChecks();
+
+        VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(
+            new EndpointRoute(existing.getUrl(), true, true), new EndpointRoute(added.getUrl(), true, true)));
+        TestRoute test = new TestRoute("t1", "Test", "/", List.of(variant));
+        when(routingTable.current()).thenReturn(new RoutingSnapshot(2, 0, Map.of("shop.example",
+            new DomainRoute("d1", "shop.example", null, List.of(test)))));
+        checker.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.ENDPOINT, added.getUrl()));
+
+        assertTrue(healthRegistry.hasWarmingEndpoints());
+        assertEquals(0.1, healthRegistry.slowStartFactor(added.getUrl()), 1e-9);
+        assertEquals(1.0, healthRegistry.slowStartFactor(existing.getUrl()));
+
+        // The target refresh that discovers the endpoint continues the ramp instead of restarting it
+        advanceMillis(3000);
+        checker.performHealthChecks();
+        assertTrue(healthRegistry.isTracked(added.getUrl()));
+        assertEquals(0.19, healthRegistry.slowStartFactor(added.getUrl()), 1e-9);
+    }
+
+    @Test
+    void deletedEndpoint_isDroppedFromRegistry() {
+        EndpointModel gone = endpoint(baseUrl() + "/ok", true);
+        when(endpointModelService.findAllEndpoints()).thenReturn(List.of(gone)).thenReturn(List.of());
+
+        checker.performHealthChecks();
+        advanceMillis(1000);
+        checker.performHealthChecks();
+
+        verify(healthRegistry).remove(gone.getUrl());
+    }
+
+    @Test
+    void endpointThatStaysDown_isProbedWithExponentialBackoff() {
+        EndpointModel down = endpoint(baseUrl() + "/down", true);
+        when(endpointModelService.findAllEndpoints()).thenReturn(List.of(down));
+        doAnswer(invocation -> {
+            Collection<String> failed = invocation.getArgument(1);
+            if (failed.contains(down.getUrl())) {
+                down.setAlive(false);
+            }
+            return null;
+        }).when(endpointModelService).updateEndpointHealth(any(), any());
+
+        checker.performHealthChecks();
+        for (int second = 1; second <= 8; second++) {
+            advanceMillis(1000);
+            checker.performHealthChecks();
+        }
+
+        // Probed at 1s (goes down), then after 1s, 2s and 4s
+        assertEquals(4, downHits.get());
+        assertFalse(down.isAlive());
+    }
+
+    @Test
+    void unhealthyThreshold_requiresConsecutiveFailures() {
+        ReflectionTestUtils.setField(checker, "unhealthyThreshold", 2);
+        EndpointModel down = endpoint(baseUrl() + "/down", true);
+        when(endpointModelService.findAllEndpoints()).thenReturn(List.of(down));
+
+        checker.performHealthChecks();
+        advanceMillis(1000);
+        checker.performHealthChecks();
+        verify(endpointModelService, never()).updateEndpointHealth(any(), any());
+
+        advanceMillis(1000);
+        checker.performHealthChecks();
+        verify(endpointModelService).updateEndpointHealth(List.of(), List.of(down.getUrl()));
+    }
+
+    private String baseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    private static EndpointModel endpoint(String url, boolean alive) {
+        EndpointModel endpoint = new EndpointModel();
+        endpoint.setUrl(url);
+        endpoint.setActive(true);
+        endpoint.setAlive(alive);
+        return endpoint;
+    }
+}
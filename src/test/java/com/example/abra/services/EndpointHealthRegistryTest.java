@@ -0,0 +1,89 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.abra.routing.EndpointRoute;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class EndpointHealthRegistryTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private EndpointHealthRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new EndpointHealthRegistry();
+        ReflectionTestUtils.setField(registry, "slowStartWindowMs", 10_000L);
+        ReflectionTestUtils.setField(registry, "slowStartMinWeight", 0.1);
+        ReflectionTestUtils.setField(registry, "clock", (LongSupplier) now::get);
+    }
+
+    @Test
+    void update_bumpsEpochOnlyOnChange() {
+        long epoch = registry.getEpoch();
+        registry.update("http://a", true);
+        assertEquals(epoch + 1, registry.getEpoch());
+
+        registry.update("http://a", true);
+        assertEquals(epoch + 1, registry.getEpoch());
+
+        registry.update("http://a", false);
+        assertEquals(epoch + 2, registry.getEpoch());
+        assertFalse(registry.isAlive(new EndpointRoute("http://a", true, true)));
+
+        registry.remove("http://a");
+        assertEquals(epoch + 3, registry.getEpoch());
+        assertTrue(registry.isAlive(new EndpointRoute("http://a", true, true)));
+    }
+
+    @Test
+    void recoveredEndpoint_rampsLinearlyOverWindow() {
+        registry.update("http://a", false);
+        registry.update("http://a", true);
+
+        assertTrue(registry.hasWarmingEndpoints());
+        assertEquals(0.1, registry.slowStartFactor("http://a"), 1e-9);
+
+        advanceMillis(5_000);
+        assertEquals(0.55, registry.slowStartFactor("http://a"), 1e-9);
+
+        advanceMillis(5_000);
+        assertEquals(1.0, registry.slowStartFactor("http://a"));
+        assertFalse(registry.hasWarmingEndpoints());
+    }
+
+    @Test
+    void knownAliveEndpoint_doesNotEnterSlowStart() {
+        registry.update("http://a", true);
+
+        assertFalse(registry.hasWarmingEndpoints());
+        assertEquals(1.0, registry.slowStartFactor("http://a"));
+    }
+
+    @Test
+    void endpointGoingDown_leavesSlowStart() {
+        registry.update("http://a", false);
+        registry.update("http://a", true);
+        registry.update("http://a", false);
+
+        assertEquals(1.0, registry.slowStartFactor("http://a"));
+    }
+
+    @Test
+    void zeroWindow_disablesSlowStart() {
+        ReflectionTestUtils.setField(registry, "slowStartWindowMs", 0L);
+        registry.startSlowStart("http://a");
+
+        assertFalse(registry.hasWarmingEndpoints());
+        assertEquals(1.0, registry.slowStartFactor("http://a"));
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
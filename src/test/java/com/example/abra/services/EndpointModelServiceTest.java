@@ -20,6 +20,9 @@ class EndpointModelServiceTest {
     @Mock
     private EndpointModelRepository repository;
 
+    @Mock
+    private RoutingConfigVersionService routingConfigVersionService;
+
     @InjectMocks
     private EndpointModelService service;
 
@@ -65,11 +68,28 @@ class EndpointModelServiceTest {
         EndpointModel e = new EndpointModel();
         service.updateEndpoint(e);
         verify(repository).save(e);
+        verify(routingConfigVersionService).bump();
+    }
+
+    @Test
+    void updateEndpointHealth_bulkUpdatesEachStateWithoutBumpingConfigVersion() {
+        service.updateEndpointHealth(List.of("/a"), List.of("/b", "/c"));
+        verify(repository).updateAliveByUrlIn(true, List.of("/a"));
+        verify(repository).updateAliveByUrlIn(false, List.of("/b", "/c"));
+        verify(repository, never()).save(any());
+        verifyNoInteractions(routingConfigVersionService);
+    }
+
+    @Test
+    void updateEndpointHealth_noTransitions_skipsDatabase() {
+        service.updateEndpointHealth(List.of(), List.of());
+        verifyNoInteractions(repository);
     }
 
     @Test
     void deleteEndpointById_callsDelete() {
         service.deleteEndpointById("/u");
         verify(repository).deleteById("/u");
+        verify(routingConfigVersionService).bump();
     }
 }
@@ -0,0 +1,310 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.models.LoadBalancingStrategy;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class EndpointServiceTest {
+
+    @Mock
+    private OutlierDetector outlierDetector;
+
+    @Spy
+    private EndpointHealthRegistry healthRegistry = new EndpointHealthRegistry();
+
+    @Mock
+    private RoutingTable routingTable;
+
+    @InjectMocks
+    private EndpointService service;
+
+    @Test
+    void selectEndpoint_rotatesOverHealthyEndpointsOnly() {
+        VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(
+            new EndpointRoute("http://a", true, true),
+            new EndpointRoute("http://down", true, false),
+            new EndpointRoute("http://inactive", false, true),
+            new EndpointRoute("http://b", true, true)));
+
+        assertEquals("http://a", service.selectEndpoint(variant).getUrl());
+        assertEquals("http://b", service.selectEndpoint(variant).getUrl());
+        assertEquals("http://a", service.selectEndpoint(variant).getUrl());
+    }
+
+    @Test
+    void selectEndpoint_followsHealthRegistryWithoutRebuild() {
+        VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(
+            new EndpointRoute("http://a", true, true),
+            new EndpointRoute("http://b", true, false)));
+        assertEquals("http://a", service.selectEndpoint(variant).getUrl());
+        assertEquals("http://a", service.selectEndpoint(variant).getUrl());
+
+        healthRegistry.update("http://a", false);
+        healthRegistry.update("http://b", true);
+
+        assertEquals("http://b", service.selectEndpoint(variant).getUrl());
+        assertEquals("http://b", service.selectEndpoint(variant).getUrl());
+
+        healthRegistry.update("http://b", false);
+        assertNull(service.selectEndpoint(variant));
+    }
+
+    @Test
+    void selectEndpoint_noHealthyEndpoint_returnsNull() {
+        VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(
+            new EndpointRoute("http://down", true, false)));
+
+        assertNull(service.selectEndpoint(variant));
+    }
+
+    @Test
+    void selectEndpoint_skipsEjectedEndpoints() {
+        VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(
+            new EndpointRoute("http://a", true, true),
+            new EndpointRoute("http://b", true, true)));
+        when(outlierDetector.hasEjections()).thenReturn(true);
+        when(outlierDetector.isEjected("http://a")).thenReturn(true);
+        when(outlierDetector.isEjected("http://b")).thenReturn(false);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("http://b", service.selectEndpoint(variant).getUrl());
+        }
+    }
+
+    @Test
+    void selectEndpoint_allEjected_fallsBackToRoundRobin() {
+        VariantRoute variant = new VariantRoute("v1", "A", 100, LoadBalancingStrategy.LEAST_OUTSTANDING, List.of(
+            new EndpointRoute("http://a", true, true),
+            new EndpointRoute("http://b", true, true)));
+        when(outlierDetector.hasEjections()).thenReturn(true);
+        when(outlierDetector.isEjected(any())).thenReturn(true);
+
+        assertNotNull(service.selectEndpoint(variant));
+    }
+
+    @Test
+    void onRequestComplete_reportsOutcomeToOutlierDetector() {
+        EndpointRoute a = new EndpointRoute("http://a", true, true);
+        service.onRequestStart(a);
+        service.onRequestComplete(a, 1_000, 502);
+        service.onRequestStart(a);
+        service.onRequestComplete(a, 1_000, 404);
+        service.onRequestStart(a);
+        service.onRequestComplete(a, 1_000, 0);
+
+        verify(outlierDetector).record("http://a", true);
+        verify(outlierDetector).record("http://a", false);
+        verifyNoMoreInteractions(outlierDetector);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void selectEndpoint_counterOverflow_staysInRange() {
+        VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(
+            new EndpointRoute("http://a", true, true),
+            new EndpointRoute("http://b", true, true),
+            new EndpointRoute("http://c", true, true)));
+        Map<String, AtomicInteger> counters =
+            (Map<String, AtomicInteger>) ReflectionTestUtils.getField(service, "roundRobinCounters");
+        counters.put("v1", new AtomicInteger(Integer.MAX_VALUE - 1));
+
+        for (int i = 0; i < 6; i++) {
+            assertNotNull(service.selectEndpoint(variant));
+        }
+    }
+
+    @Test
+    void leastOutstanding_picksEndpointWithFewestInFlight() {
+        EndpointRoute a = new EndpointRoute("http://a", true, true);
+        EndpointRoute b = new EndpointRoute("http://b", true, true);
+        EndpointRoute c = new EndpointRoute("http://c", true, true);
+        VariantRoute variant = new VariantRoute("v1", "A", 100,
+            LoadBalancingStrategy.LEAST_OUTSTANDING, List.of(a, b, c));
+        service.onRequestStart(a);
+        service.onRequestStart(a);
+        service.onRequestStart(b);
+
+        assertSame(c, service.selectEndpoint(variant));
+
+        service.onRequestComplete(a, 1_000_000, 200);
+        service.onRequestComplete(a, 1_000_000, 200);
+        service.onRequestStart(c);
+        service.onRequestStart(c);
+        assertSame(a, service.selectEndpoint(variant));
+    }
+
+    @Test
+    void endpointChange_resetsLoadOfNamedEndpoint() {
+        EndpointRoute a = new EndpointRoute("http://a", true, true);
+        EndpointRoute b = new EndpointRoute("http://b", true, true);
+        VariantRoute variant = new VariantRoute("v1", "A", 100,
+            LoadBalancingStrategy.LEAST_OUTSTANDING, List.of(a, b));
+        when(routingTable.current()).thenReturn(snapshotOf(variant));
+        service.onRequestStart(a);
+        service.onRequestStart(a);
+        service.onRequestStart(b);
+
+        service.onRoutingConfigChanged(
+            new RoutingConfigChangedEvent(this, RoutingEntityType.ENDPOINT, "http://a"));
+
+        assertSame(a, service.selectEndpoint(variant));
+        // Requests started before the reset must not drive the count below zero
+        service.onRequestComplete(a, 1_000_000, 200);
+        service.onRequestComplete(a, 1_000_000, 200);
+        service.onRequestStart(a);
+        service.onRequestStart(a);
+        assertSame(b, service.selectEndpoint(variant));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void configChange_dropsStateOfRemovedVariantsAndEndpoints() {
+        EndpointRoute kept = new EndpointRoute("http://kept", true, true);
+        EndpointRoute removed = new EndpointRoute("http://removed", true, true);
+        VariantRoute keptVariant = new VariantRoute("v1", "A", 100, null,
+            List.of(kept, new EndpointRoute("http://x", true, true)));
+        VariantRoute removedVariant = new VariantRoute("v2", "B", 100, null,
+            List.of(removed, new EndpointRoute("http://y", true, true)));
+        service.selectEndpoint(keptVariant);
+        service.selectEndpoint(removedVariant);
+        service.onRequestStart(kept);
+        service.onRequestStart(removed);
+        when(routingTable.current()).thenReturn(snapshotOf(keptVariant));
+
+        service.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.VARIANT, "v2"));
+
+        Map<String, AtomicInteger> counters =
+            (Map<String, AtomicInteger>) ReflectionTestUtils.getField(service, "roundRobinCounters");
+        Map<String, ?> loads = (Map<String, ?>) ReflectionTestUtils.getField(service, "endpointLoads");
+        assertEquals(Set.of("v1"), counters.keySet());
+        assertEquals(Set.of("http://kept"), loads.keySet());
+    }
+
+    @Test
+    void powerOfTwoChoices_neverPicksBusierOfTwo() {
+        EndpointRoute busy = new EndpointRoute("http://busy", true, true);
+        EndpointRoute idle = new EndpointRoute("http://idle", true, true);
+        VariantRoute variant = new VariantRoute("v1", "A", 100,
+            LoadBalancingStrategy.POWER_OF_TWO_CHOICES, List.of(busy, idle));
+        service.onRequestStart(busy);
+
+        for (int i = 0; i < 20; i++) {
+            assertSame(idle, service.selectEndpoint(variant));
+        }
+    }
+
+    @Test
+    void ewmaLatency_prefersFasterEndpoint() {
+        EndpointRoute slow = new EndpointRoute("http://slow", true, true);
+        EndpointRoute fast = new EndpointRoute("http://fast", true, true);
+        VariantRoute variant = new VariantRoute("v1", "A", 100,
+            LoadBalancingStrategy.EWMA_LATENCY, List.of(slow, fast));
+        service.onRequestStart(slow);
+        service.onRequestComplete(slow, 100_000_000, 200);
+        service.onRequestStart(fast);
+        service.onRequestComplete(fast, 10_000_000, 200);
+
+        for (int i = 0; i < 4; i++) {
+            assertSame(fast, service.selectEndpoint(variant));
+        }
+    }
+
+    @Test
+    void slowStart_rampsShareOfRecoveredEndpoint() {
+        AtomicLong now = new AtomicLong(1_000_000_000L);
+        ReflectionTestUtils.setField(healthRegistry, "slowStartWindowMs", 10_000L);
+        ReflectionTestUtils.setField(healthRegistry, "slowStartMinWeight", 0.1);
+        ReflectionTestUtils.setField(healthRegistry, "clock", (LongSupplier) now::get);
+        VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(
+            new EndpointRoute("http://a", true, true),
+            new EndpointRoute("http://b", true, true)));
+        healthRegistry.update("http://a", false);
+        healthRegistry.update("http://a", true);
+
+        int cold = countSelections(variant, "http://a", 2000);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        int warming = countSelections(variant, "http://a", 2000);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(5));
+        int warm = countSelections(variant, "http://a", 2000);
+
+        assertTrue(cold > 0 && cold < 200, "cold share " + cold);
+        assertTrue(warming > cold && warming < 800, "warming share " + warming);
+        assertEquals(1000, warm);
+    }
+
+    @Test
+    void effectiveWeights_scaleWithHealthyShareAndFollowRegistry() {
+        VariantRoute small = new VariantRoute("v1", "A", 50, null, List.of(
+            new EndpointRoute("http://a1", true, true),
+            new EndpointRoute("http://a2", true, true)));
+        VariantRoute large = new VariantRoute("v2", "B", 50, null, List.of(
+            new EndpointRoute("http://b1", true, true),
+            new EndpointRoute("http://b2", true, true),
+            new EndpointRoute("http://b3", true, true),
+            new EndpointRoute("http://b4", true, true),
+            new EndpointRoute("http://inactive", false, true)));
+        TestRoute test = new TestRoute("t1", "Cart", "/cart", List.of(small, large));
+
+        TestRoute.EffectiveWeights healthy = service.effectiveWeights(test);
+        assertArrayEquals(new double[] {50, 50}, healthy.weights());
+        assertSame(healthy, service.effectiveWeights(test));
+
+        healthRegistry.update("http://a1", false);
+        healthRegistry.update("http://b1", false);
+
+        assertArrayEquals(new double[] {25, 37.5}, service.effectiveWeights(test).weights());
+        List<EndpointService.VariantWeight> weights = service.variantWeights(test);
+        assertEquals(new EndpointService.VariantWeight("v1", "A", 50, 25, 0.5, 0.4, 2, 1), weights.get(0));
+        assertEquals(new EndpointService.VariantWeight("v2", "B", 50, 37.5, 0.5, 0.6, 4, 3), weights.get(1));
+    }
+
+    @Test
+    void effectiveWeights_noLiveEndpointAnywhere_fallsBackToConfiguredWeights() {
+        TestRoute test = new TestRoute("t1", "Cart", "/cart", List.of(
+            new VariantRoute("v1", "A", 70, null, List.of(new EndpointRoute("http://a", true, false))),
+            new VariantRoute("v2", "B", 30, null, List.of())));
+
+        assertArrayEquals(new double[] {70, 30}, service.effectiveWeights(test).weights());
+    }
+
+    private int countSelections(VariantRoute variant, String url, int requests) {
+        int count = 0;
+        for (int i = 0; i < requests; i++) {
+            if (url.equals(service.selectEndpoint(variant).getUrl())) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static RoutingSnapshot snapshotOf(VariantRoute variant) {
+        TestRoute test = new TestRoute("t1", "Test", "/", List.of(variant));
+        return new RoutingSnapshot(1, 0, Map.of("shop.example",
+            new DomainRoute("d1", "shop.example", null, List.of(test))));
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.example.abra.models.VariantModel;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ExperimentStatisticsTest {
+
+    private final JdbcTemplate jdbcTemplate =
+        new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"));
+    private ExperimentStatistics statistics;
+    private List<VariantModel> variants;
+
+    @BeforeEach
+    void setUp() {
+        statistics = new ExperimentStatistics(jdbcTemplate);
+        ReflectionTestUtils.setField(statistics, "alpha", 0.05);
+        ReflectionTestUtils.setField(statistics, "msprtTau", 0.05);
+        variants = List.of(variant("v1", "A"), variant("v2", "B"));
+    }
+
+    @Test
+    void clearWinner_isSignificant() {
+        simulate("v1", 10_000, 1_000);
+        simulate("v2", 10_000, 1_300);
+
+        ExperimentStatistics.TestStatistics result = statistics.analyze("t1", variants, null);
+
+        assertEquals("v1", result.controlVariantId());
+        ExperimentStatistics.VariantStatistics control = result.variants().get(0);
+        assertNull(control.comparison());
+        assertEquals(0.10, control.conversionRate(), 1e-12);
+        assertTrue(control.credibleLow() < 0.10 && control.credibleHigh() > 0.10);
+
+        ExperimentStatistics.Comparison comparison = result.variants().get(1).comparison();
+        assertEquals(0.3, comparison.lift(), 1e-9);
+        assertTrue(comparison.pValue() < 1e-6, "p " + comparison.pValue());
+        assertTrue(comparison.probabilityToBeatControl() > 0.999);
+        assertTrue(comparison.msprtPValue() < 0.05, "msprt p " + comparison.msprtPValue());
+        assertTrue(comparison.significant());
+    }
+
+    @Test
+    void smallDifference_isNotSignificant() {
+        simulate("v1", 1_000, 100);
+        simulate("v2", 1_000, 104);
+
+        ExperimentStatistics.Comparison comparison =
+            statistics.analyze("t1", variants, null).variants().get(1).comparison();
+
+        assertTrue(comparison.pValue() > 0.5);
+        // The sequential test is more conservative than a fixed-horizon test
+        assertTrue(comparison.msprtPValue() >= comparison.pValue());
+        assertFalse(comparison.significant());
+    }
+
+    @Test
+    void controlCanBeChosen_andUnseenVariantsAreEmpty() {
+        simulate("v1", 100, 10);
+
+        ExperimentStatistics.TestStatistics result = statistics.analyze("t1", variants, "v2");
+
+        assertEquals("v2", result.controlVariantId());
+        ExperimentStatistics.VariantStatistics unseen = result.variants().get(1);
+        assertEquals(0, unseen.exposures());
+        assertNull(unseen.comparison());
+        assertEquals(0.5, unseen.posteriorMean(), 1e-12);
+        assertEquals(0.0, unseen.credibleLow());
+        assertEquals(1.0, unseen.credibleHigh());
+        assertEquals(1.0, result.variants().get(0).comparison().msprtPValue());
+    }
+
+    @Test
+    void valueStatistics_areTracked() {
+        RunningStats batch = new RunningStats();
+        batch.add(10);
+        batch.add(30);
+        statistics.recordConversions("v1", batch);
+
+        ExperimentStatistics.VariantStatistics v1 = statistics.analyze("t1", variants, null).variants().get(0);
+
+        assertEquals(2, v1.conversions());
+        assertEquals(20.0, v1.valueMean());
+        assertEquals(Math.sqrt(200), v1.valueStdDev(), 1e-9);
+    }
+
+    @Test
+    void repeatConversions_areNotCappedAtExposures() {
+        simulate("v1", 10, 15);
+
+        ExperimentStatistics.VariantStatistics v1 = statistics.analyze("t1", variants, null).variants().get(0);
+
+        assertEquals(15, v1.conversions());
+        assertEquals(1.5, v1.conversionRate(), 1e-12);
+        assertTrue(v1.posteriorMean() <= 1);
+    }
+
+    @Test
+    void init_loadsEarlierExposuresAndConversionsOnce() {
+        jdbcTemplate.execute("CREATE TABLE visitor_exposure (test_id VARCHAR(50), variant_id VARCHAR(50), "
+            + "visitor_hash VARCHAR(64))");
+        jdbcTemplate.execute("CREATE TABLE conversion_aggregate (test_id VARCHAR(50), variant_id VARCHAR(50), "
+            + "conversions BIGINT, value_sum DOUBLE, value_sum_of_squares DOUBLE)");
+        jdbcTemplate.update("INSERT INTO visitor_exposure VALUES ('t1', 'v1', NULL), ('t1', 'v1', NULL), "
+            + "('t1', 'v2', 'b'), ('t2', 'v9', NULL)");
+        // Conversion rows flushed by two nodes
+        jdbcTemplate.update("INSERT INTO conversion_aggregate VALUES ('t1', 'v1', 1, 10, 100), ('t1', 'v1', 1, 30, 900)");
+
+        statistics.init();
+        statistics.recordExposures("v1", 1);
+
+        ExperimentStatistics.TestStatistics result = statistics.analyze("t1", variants, null);
+        ExperimentStatistics.VariantStatistics v1 = result.variants().get(0);
+        assertEquals(3, v1.exposures());
+        assertEquals(2, v1.conversions());
+        assertEquals(20.0, v1.valueMean(), 1e-9);
+        assertEquals(Math.sqrt(200), v1.valueStdDev(), 1e-9);
+        assertEquals(1, result.variants().get(1).exposures());
+    }
+
+    @Test
+    void init_withoutTables_startsFromZero() {
+        statistics.init();
+
+        assertEquals(0, statistics.analyze("t1", variants, null).variants().get(0).exposures());
+    }
+
+    @Test
+    void normalCdf_matchesKnownValues() {
+        assertEquals(0.5, ExperimentStatistics.normalCdf(0), 1e-7);
+        assertEquals(0.975, ExperimentStatistics.normalCdf(1.959964), 1e-6);
+        assertEquals(0.025, ExperimentStatistics.normalCdf(-1.959964), 1e-6);
+    }
+
+    private void simulate(String variantId, int exposures, int conversions) {
+        RunningStats values = new RunningStats();
+        statistics.recordExposures(variantId, exposures);
+        for (int i = 0; i < conversions; i++) {
+            values.add(1.0);
+        }
+        statistics.recordConversions(variantId, values);
+    }
+
+    private static VariantModel variant(String id, String name) {
+        VariantModel variant = new VariantModel();
+        variant.setVariant_id(id);
+        variant.setName(name);
+        return variant;
+    }
+}
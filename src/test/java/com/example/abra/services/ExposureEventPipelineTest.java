@@ -0,0 +1,209 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.routing.AssignmentSource;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class ExposureEventPipelineTest {
+
+    private final EndpointRoute endpoint = new EndpointRoute("http://a", true, true);
+    private final VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(endpoint));
+    private final TestRoute test = new TestRoute("t1", "Cart", "/cart", List.of(variant));
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ExperimentStatistics statistics = mock(ExperimentStatistics.class);
+    private final List<Object[]> rows = new ArrayList<>();
+    private ExposureEventPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        pipeline = new ExposureEventPipeline(jdbcTemplate, meterRegistry, statistics);
+        ReflectionTestUtils.setField(pipeline, "enabled", true);
+        ReflectionTestUtils.setField(pipeline, "capacity", 2);
+        ReflectionTestUtils.setField(pipeline, "batchSize", 100);
+        ReflectionTestUtils.setField(pipeline, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(pipeline, "backpressure", ExposureEventPipeline.Backpressure.DROP);
+        ReflectionTestUtils.setField(pipeline, "blockTimeoutMs", 50L);
+        ReflectionTestUtils.setField(pipeline, "visitorKeySalt", "");
+        ReflectionTestUtils.setField(pipeline, "knownVisitorCapacity", 100);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void events_areWrittenInBatchesWithHashedVisitorKey() throws InterruptedException {
+        doAnswer(invocation -> {
+            rows.addAll(invocation.getArgument(1, List.class));
+            return new int[0];
+        }).when(jdbcTemplate).batchUpdate(startsWith("INSERT INTO exposure_event"), anyList(), any(int[].class));
+        pipeline.init();
+
+        assertTrue(pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, "visitor-1"));
+        assertTrue(pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null));
+        pipeline.shutdown();
+
+        assertEquals(2, rows.size());
+        assertEquals("t1", rows.get(0)[1]);
+        assertEquals("v1", rows.get(0)[2]);
+        assertEquals("http://a", rows.get(0)[3]);
+        assertEquals("COOKIE", rows.get(0)[4]);
+        // Hex SHA-256 instead of the key itself
+        assertEquals(64, ((String) rows.get(0)[5]).length());
+        assertNotEquals("visitor-1", rows.get(0)[5]);
+        assertNull(rows.get(1)[5]);
+        assertEquals(2, meterRegistry.get("abra.exposure.written").functionCounter().count());
+    }
+
+    @Test
+    void fullQueue_dropsAndCountsEvents() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return new int[0];
+        }).when(jdbcTemplate).batchUpdate(startsWith("INSERT INTO exposure_event"), anyList(), any(int[].class));
+        pipeline.init();
+
+        assertTrue(pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        // The writer is stuck in the database; the queue holds two more
+        assertTrue(pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null));
+        assertTrue(pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null));
+        assertFalse(pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null));
+
+        assertEquals(1, meterRegistry.get("abra.exposure.dropped").functionCounter().count());
+        assertEquals(2, meterRegistry.get("abra.exposure.queue.depth").gauge().value());
+        release.countDown();
+    }
+
+    @Test
+    void blockPolicy_waitsForSpace() throws InterruptedException {
+        ReflectionTestUtils.setField(pipeline, "backpressure", ExposureEventPipeline.Backpressure.BLOCK);
+        ReflectionTestUtils.setField(pipeline, "blockTimeoutMs", 5_000L);
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return new int[0];
+        }).when(jdbcTemplate).batchUpdate(startsWith("INSERT INTO exposure_event"), anyList(), any(int[].class));
+        pipeline.init();
+
+        pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null);
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null);
+        pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null);
+        new Thread(() -> {
+            sleep(100);
+            release.countDown();
+        }).start();
+
+        assertTrue(pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null));
+        assertEquals(0, meterRegistry.get("abra.exposure.dropped").functionCounter().count());
+    }
+
+    @Test
+    void writer_followsVirtualThreadSetting() {
+        pipeline.init();
+        Thread platformWriter = (Thread) ReflectionTestUtils.getField(pipeline, "writer");
+        assertFalse(platformWriter.isVirtual());
+        assertTrue(platformWriter.isDaemon());
+
+        ExposureEventPipeline virtualPipeline = new ExposureEventPipeline(jdbcTemplate, new SimpleMeterRegistry(), statistics);
+        ReflectionTestUtils.setField(virtualPipeline, "enabled", true);
+        ReflectionTestUtils.setField(virtualPipeline, "capacity", 2);
+        ReflectionTestUtils.setField(virtualPipeline, "flushIntervalMs", 10L);
+        ReflectionTestUtils.setField(virtualPipeline, "virtualThreads", true);
+        virtualPipeline.init();
+        try {
+            Thread virtualWriter = (Thread) ReflectionTestUtils.getField(virtualPipeline, "writer");
+            assertTrue(virtualWriter.isVirtual());
+            assertEquals("exposure-event-writer", virtualWriter.getName());
+        } finally {
+            assertDoesNotThrow(virtualPipeline::shutdown);
+        }
+    }
+
+    @Test
+    void firstExposures_countNewAssignmentsAndEachHashVisitorOnce() throws InterruptedException {
+        JdbcTemplate database =
+            new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1"));
+        database.execute("CREATE TABLE exposure_event (id BIGINT AUTO_INCREMENT PRIMARY KEY, occurred_at TIMESTAMP, "
+            + "test_id VARCHAR(50), variant_id VARCHAR(50), endpoint_url VARCHAR(50), assignment VARCHAR(10), "
+            + "visitor_hash VARCHAR(64))");
+        database.execute("CREATE TABLE visitor_exposure (id BIGINT AUTO_INCREMENT PRIMARY KEY, first_seen_at TIMESTAMP, "
+            + "test_id VARCHAR(50), variant_id VARCHAR(50), visitor_hash VARCHAR(64), "
+            + "CONSTRAINT visitor_exposure_visitor UNIQUE (test_id, visitor_hash))");
+
+        ExposureEventPipeline first = newPipeline(database);
+        first.publish(test, variant, endpoint, AssignmentSource.NEW, "visitor-1");
+        first.publish(test, variant, endpoint, AssignmentSource.COOKIE, "visitor-1");
+        first.publish(test, variant, endpoint, AssignmentSource.HASH, "visitor-2");
+        first.publish(test, variant, endpoint, AssignmentSource.HASH, "visitor-2");
+        first.publish(test, variant, endpoint, AssignmentSource.HASH, "visitor-3");
+        first.shutdown();
+        // Another node, or this one after a restart, sees visitor 3 again and visitor 4 for the first time
+        ExposureEventPipeline second = newPipeline(database);
+        second.publish(test, variant, endpoint, AssignmentSource.HASH, "visitor-3");
+        second.publish(test, variant, endpoint, AssignmentSource.HASH, "visitor-4");
+        second.shutdown();
+
+        verify(statistics).recordExposures("v1", 3);
+        verify(statistics).recordExposures("v1", 1);
+        assertEquals(4, database.queryForObject("SELECT COUNT(*) FROM visitor_exposure", Long.class));
+        assertEquals(7, database.queryForObject("SELECT COUNT(*) FROM exposure_event", Long.class));
+    }
+
+    @Test
+    void disabled_publishesNothing() {
+        ReflectionTestUtils.setField(pipeline, "enabled", false);
+        pipeline.init();
+
+        assertFalse(pipeline.publish(test, variant, endpoint, AssignmentSource.COOKIE, null));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private ExposureEventPipeline newPipeline(JdbcTemplate database) {
+        ExposureEventPipeline newPipeline = new ExposureEventPipeline(database, new SimpleMeterRegistry(), statistics);
+        ReflectionTestUtils.setField(newPipeline, "enabled", true);
+        ReflectionTestUtils.setField(newPipeline, "capacity", 16);
+        ReflectionTestUtils.setField(newPipeline, "batchSize", 100);
+        ReflectionTestUtils.setField(newPipeline, "flushIntervalMs", 10_000L);
+        ReflectionTestUtils.setField(newPipeline, "backpressure", ExposureEventPipeline.Backpressure.DROP);
+        ReflectionTestUtils.setField(newPipeline, "visitorKeySalt", "salt");
+        ReflectionTestUtils.setField(newPipeline, "knownVisitorCapacity", 100);
+        newPipeline.init();
+        return newPipeline;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
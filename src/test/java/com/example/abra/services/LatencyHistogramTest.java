@@ -0,0 +1,109 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValues_areExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10; micros++) {
+            histogram.recordMicros(micros);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10, snapshot.getTotalCount());
+        assertEquals(5, snapshot.valueAtPercentile(50));
+        assertEquals(9, snapshot.valueAtPercentile(90));
+        assertEquals(10, snapshot.getMaxMicros());
+    }
+
+    @Test
+    void percentiles_areWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100_000; micros++) {
+            histogram.recordMicros(micros);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(50_000, snapshot.valueAtPercentile(50), 50_000 * 0.035);
+        assertEquals(99_000, snapshot.valueAtPercentile(99), 99_000 * 0.035);
+        assertEquals(99_900, snapshot.valueAtPercentile(99.9), 99_900 * 0.035);
+    }
+
+    @Test
+    void bucketBounds_coverEveryValueOnce() {
+        for (long micros : List.of(0L, 31L, 32L, 33L, 63L, 64L, 1_000L, 123_456_789L, LatencyHistogram.MAX_MICROS)) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            assertTrue(micros <= LatencyHistogram.upperBoundOf(bucket), "value " + micros);
+            if (bucket > 0) {
+                assertTrue(micros > LatencyHistogram.upperBoundOf(bucket - 1), "value " + micros);
+            }
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(LatencyHistogram.MAX_MICROS));
+    }
+
+    @Test
+    void outOfRangeValues_areClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(-5);
+        histogram.recordMicros(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getTotalCount());
+        assertEquals(0, snapshot.valueAtPercentile(50));
+        assertEquals(LatencyHistogram.MAX_MICROS, snapshot.getMaxMicros());
+    }
+
+    @Test
+    void merge_addsCounts() {
+        LatencyHistogram fast = new LatencyHistogram();
+        LatencyHistogram slow = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            fast.recordMicros(10);
+        }
+        for (int i = 0; i < 10; i++) {
+            slow.recordMicros(1_000);
+        }
+
+        LatencyHistogram.Snapshot merged = fast.snapshot().merge(slow.snapshot());
+
+        assertEquals(100, merged.getTotalCount());
+        assertEquals(10, merged.valueAtPercentile(90));
+        assertEquals(1_000, merged.valueAtPercentile(91), 1_000 * 0.035);
+        assertEquals(2, merged.getBuckets().size());
+        assertEquals(90, fast.snapshot().getTotalCount());
+    }
+
+    @Test
+    void groups_areAllocatedOnFirstUse() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        AtomicReferenceArray<?> groups = (AtomicReferenceArray<?>) ReflectionTestUtils.getField(histogram, "groups");
+        assertEquals(0, allocated(groups));
+
+        histogram.recordMicros(1_000);
+        histogram.recordMicros(1_010);
+        histogram.recordMicros(5_000);
+
+        assertEquals(2, allocated(groups));
+        long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        histogram.addTo(counts);
+        histogram.addTo(counts);
+        assertEquals(6, LatencyHistogram.Snapshot.of(counts).getTotalCount());
+    }
+
+    private static int allocated(AtomicReferenceArray<?> groups) {
+        int allocated = 0;
+        for (int i = 0; i < groups.length(); i++) {
+            if (groups.get(i) != null) {
+                allocated++;
+            }
+        }
+        return allocated;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class LatencyMetricsTest {
+
+    private final EndpointRoute endpoint = new EndpointRoute("http://a", true, true);
+    private final VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(endpoint));
+    private final RoutingTable routingTable = mock(RoutingTable.class);
+    private LatencyMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new LatencyMetrics(routingTable);
+        ReflectionTestUtils.setField(metrics, "retentionIntervals", 2);
+    }
+
+    @Test
+    void report_summarizesVariantAndEndpoint() {
+        for (int i = 1; i <= 100; i++) {
+            metrics.recordUpstream(variant, endpoint, TimeUnit.MILLISECONDS.toNanos(i));
+        }
+        metrics.recordDecision(variant, TimeUnit.MICROSECONDS.toNanos(20));
+
+        LatencyMetrics.LatencyReport report = metrics.report(0);
+
+        LatencyMetrics.VariantLatency variantLatency = report.variants().get(0);
+        assertEquals("v1", variantLatency.variantId());
+        assertEquals(100, variantLatency.upstream().count());
+        assertEquals(50_000, variantLatency.upstream().p50(), 50_000 * 0.035);
+        assertEquals(99_000, variantLatency.upstream().p99(), 99_000 * 0.035);
+        assertEquals(1, variantLatency.decision().count());
+        assertEquals(20, variantLatency.decision().p50());
+        assertEquals("http://a", report.endpoints().get(0).url());
+        assertEquals(100, report.endpoints().get(0).upstream().count());
+    }
+
+    @Test
+    void rollInterval_keepsRetainedIntervalsQueryable() {
+        metrics.recordDecision(variant, 1_000);
+        metrics.rollInterval();
+        metrics.recordDecision(variant, 1_000);
+        metrics.recordDecision(variant, 1_000);
+
+        assertEquals(2, decisions(0));
+        assertEquals(3, decisions(1));
+
+        metrics.rollInterval();
+        metrics.rollInterval();
+        // The first interval has dropped out of the two retained ones
+        assertEquals(2, decisions(5));
+    }
+
+    @Test
+    void distribution_rejectsUnknownScope() {
+        metrics.recordUpstream(variant, endpoint, 1_000);
+
+        assertEquals(1, metrics.distribution(LatencyMetrics.UPSTREAM, "endpoint", "http://a", 0).getTotalCount());
+        assertEquals(0, metrics.distribution(LatencyMetrics.UPSTREAM, "endpoint", "http://b", 0).getTotalCount());
+        assertNull(metrics.distribution(LatencyMetrics.DECISION, "endpoint", "http://a", 0));
+    }
+
+    @Test
+    void configChange_dropsHistogramsOfRemovedVariantsAndEndpoints() {
+        EndpointRoute removedEndpoint = new EndpointRoute("http://b", true, true);
+        VariantRoute removedVariant = new VariantRoute("v2", "B", 0, null, List.of(removedEndpoint));
+        metrics.recordUpstream(removedVariant, removedEndpoint, 1_000);
+        metrics.rollInterval();
+        metrics.recordUpstream(variant, endpoint, 1_000);
+        metrics.recordDecision(removedVariant, 1_000);
+        when(routingTable.current()).thenReturn(new RoutingSnapshot(1, 0, Map.of("shop.example",
+            new DomainRoute("d1", "shop.example", null, List.of(new TestRoute("t1", "Test", "/", List.of(variant)))))));
+
+        metrics.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.VARIANT, "v2"));
+
+        LatencyMetrics.LatencyReport report = metrics.report(1);
+        assertEquals(List.of("v1"), report.variants().stream().map(LatencyMetrics.VariantLatency::variantId).toList());
+        assertEquals(List.of("http://a"), report.endpoints().stream().map(LatencyMetrics.EndpointLatency::url).toList());
+        assertEquals(0, metrics.distribution(LatencyMetrics.UPSTREAM, "endpoint", "http://b", 1).getTotalCount());
+    }
+
+    private long decisions(int intervals) {
+        return metrics.report(intervals).variants().get(0).decision().count();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.models.RoutingMode;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class OutlierDetectorTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+    private final RoutingTable routingTable = mock(RoutingTable.class);
+    private OutlierDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        detector = new OutlierDetector(routingTable);
+        ReflectionTestUtils.setField(detector, "consecutiveFailureThreshold", 3);
+        ReflectionTestUtils.setField(detector, "errorRateThreshold", 0.5);
+        ReflectionTestUtils.setField(detector, "minRequests", 10);
+        ReflectionTestUtils.setField(detector, "intervalMs", 10_000L);
+        ReflectionTestUtils.setField(detector, "baseEjectionMs", 1_000L);
+        ReflectionTestUtils.setField(detector, "maxEjectionMs", 10_000L);
+        ReflectionTestUtils.setField(detector, "clock", (LongSupplier) now::get);
+    }
+
+    @Test
+    void consecutiveFailures_ejectUntilBackoffExpires() {
+        detector.record("http://a", true);
+        detector.record("http://a", true);
+        assertFalse(detector.isEjected("http://a"));
+        assertFalse(detector.hasEjections());
+
+        detector.record("http://a", true);
+        assertTrue(detector.isEjected("http://a"));
+        assertTrue(detector.hasEjections());
+        assertFalse(detector.isEjected("http://b"));
+
+        advanceMillis(1_001);
+        assertFalse(detector.isEjected("http://a"));
+        assertFalse(detector.hasEjections());
+    }
+
+    @Test
+    void negativeClock_reportsNoEjectionsBeforeTheFirst() {
+        // System.nanoTime may be negative
+        now.set(-5_000_000_000L);
+
+        assertFalse(detector.hasEjections());
+    }
+
+    @Test
+    void configChange_dropsOutcomesOfRemovedEndpoints() {
+        EndpointRoute endpoint = new EndpointRoute("http://b", true, true);
+        VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(endpoint));
+        DomainRoute domain = new DomainRoute("d1", "shop.example", RoutingMode.PROXY,
+            List.of(new TestRoute("t1", "Cart", "/cart", List.of(variant))));
+        when(routingTable.current()).thenReturn(new RoutingSnapshot(1, 0, Map.of("shop.example", domain)));
+        for (int i = 0; i < 3; i++) {
+            detector.record("http://a", true);
+            detector.record("http://b", true);
+        }
+
+        detector.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.ENDPOINT, "http://a"));
+
+        assertFalse(detector.isEjected("http://a"));
+        assertTrue(detector.isEjected("http://b"));
+    }
+
+    @Test
+    void successResetsConsecutiveFailures() {
+        detector.record("http://a", true);
+        detector.record("http://a", true);
+        detector.record("http://a", false);
+        detector.record("http://a", true);
+
+        assertFalse(detector.isEjected("http://a"));
+    }
+
+    @Test
+    void errorRateAboveThreshold_ejects() {
+        for (int i = 0; i < 10; i++) {
+            detector.record("http://a", i % 2 == 1);
+        }
+
+        assertTrue(detector.isEjected("http://a"));
+    }
+
+    @Test
+    void repeatedEjections_backOffExponentiallyUpToMax() {
+        ejectAndExpectDurationMillis(1_000);
+        ejectAndExpectDurationMillis(2_000);
+        ejectAndExpectDurationMillis(4_000);
+        ejectAndExpectDurationMillis(8_000);
+        ejectAndExpectDurationMillis(10_000);
+    }
+
+    private void ejectAndExpectDurationMillis(long expectedMs) {
+        for (int i = 0; i < 3; i++) {
+            detector.record("http://a", true);
+        }
+        advanceMillis(expectedMs - 1);
+        assertTrue(detector.isEjected("http://a"));
+        advanceMillis(1);
+        assertFalse(detector.isEjected("http://a"));
+    }
+
+    private void advanceMillis(long millis) {
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
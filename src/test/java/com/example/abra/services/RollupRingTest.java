@@ -0,0 +1,54 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class RollupRingTest {
+
+    @Test
+    void add_sumsIntoBucketOfResolution() {
+        RollupRing ring = new RollupRing(4, 60);
+        ring.add(600, 1);
+        ring.add(659, 2);
+        ring.add(660, 5);
+
+        assertArrayEquals(new long[] {0, 3, 5}, ring.read(719, 3));
+    }
+
+    @Test
+    void skippedBuckets_readAsZero() {
+        RollupRing ring = new RollupRing(4, 1);
+        for (int second = 0; second < 4; second++) {
+            ring.add(second, 7);
+        }
+        ring.add(6, 1);
+
+        assertArrayEquals(new long[] {7, 0, 0, 1}, ring.read(6, 4));
+    }
+
+    @Test
+    void bucketsOutsideWindow_areDroppedAndReadAsZero() {
+        RollupRing ring = new RollupRing(3, 1);
+        ring.add(10, 1);
+        ring.add(7, 9);
+        ring.add(9, 2);
+
+        assertArrayEquals(new long[] {0, 0, 2, 1, 0}, ring.read(11, 5));
+    }
+
+    @Test
+    void jumpBeyondWindow_clearsEverything() {
+        RollupRing ring = new RollupRing(3, 1);
+        ring.add(1, 1);
+        ring.add(2, 1);
+        ring.add(100, 4);
+
+        assertArrayEquals(new long[] {0, 0, 4}, ring.read(100, 3));
+    }
+
+    @Test
+    void emptyRing_readsZeros() {
+        assertArrayEquals(new long[2], new RollupRing(3, 3600).read(1_000_000, 2));
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@DataJpaTest
+@Import(RoutingConfigVersionService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class RoutingConfigVersionServiceTest {
+
+    @Autowired
+    private RoutingConfigVersionService service;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+
+    @BeforeEach
+    void setUp() {
+        tx = new TransactionTemplate(transactionManager);
+    }
+
+    @Test
+    void bump_incrementsVersionAndRemembersCommittedLocalVersion() {
+        long before = service.currentVersion();
+
+        tx.executeWithoutResult(status -> service.bump());
+        tx.executeWithoutResult(status -> service.bump());
+
+        assertEquals(before + 2, service.currentVersion());
+        assertTrue(service.consumeLocalVersion(before + 1));
+        assertTrue(service.consumeLocalVersion(before + 2));
+        assertFalse(service.consumeLocalVersion(before + 2));
+    }
+
+    @Test
+    void bump_rolledBack_doesNotChangeVersionOrRecordIt() {
+        tx.executeWithoutResult(status -> service.bump());
+        long before = service.currentVersion();
+        service.discardLocalVersionsUpTo(before);
+
+        tx.executeWithoutResult(status -> {
+            service.bump();
+            status.setRollbackOnly();
+        });
+
+        assertEquals(before, service.currentVersion());
+        assertFalse(service.consumeLocalVersion(before + 1));
+    }
+
+    @Test
+    void init_keepsAnExistingVersionRow() {
+        tx.executeWithoutResult(status -> service.bump());
+        long before = service.currentVersion();
+
+        service.init();
+
+        assertEquals(before, service.currentVersion());
+        tx.executeWithoutResult(status -> service.bump());
+        assertEquals(before + 1, service.currentVersion());
+    }
+}
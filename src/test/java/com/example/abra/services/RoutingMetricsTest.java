@@ -0,0 +1,105 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.models.RoutingMode;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class RoutingMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RoutingTable routingTable = mock(RoutingTable.class);
+    private final RoutingMetrics metrics = new RoutingMetrics(meterRegistry, routingTable);
+
+    private final EndpointRoute endpointA = new EndpointRoute("http://a", true, true);
+    private final EndpointRoute endpointB = new EndpointRoute("http://b", true, true);
+    private final VariantRoute variant1 = new VariantRoute("v1", "A", 50, null, List.of(endpointA));
+    private final VariantRoute variant2 = new VariantRoute("v2", "B", 50, null, List.of(endpointB));
+    private final TestRoute test = new TestRoute("t1", "Cart", "/cart", List.of(variant1, variant2));
+    private final DomainRoute domain = new DomainRoute("d1", "shop.example", RoutingMode.PROXY, List.of(test));
+
+    @Test
+    void recordDecision_countsEveryLevel() {
+        metrics.recordDecision(domain, test, variant1, endpointA);
+        metrics.recordDecision(domain, test, variant1, endpointA);
+        metrics.recordDecision(domain, test, variant2, endpointB);
+
+        assertEquals(3, count("abra.routing.domain.requests", "domain", "shop.example"));
+        assertEquals(3, count("abra.routing.test.requests", "test", "t1"));
+        assertEquals(2, count("abra.routing.variant.requests", "variant", "v1"));
+        assertEquals(1, count("abra.routing.variant.requests", "variant", "v2"));
+        assertEquals(2, count("abra.routing.endpoint.requests", "endpoint", "http://a"));
+        assertEquals(1, count("abra.routing.endpoint.requests", "endpoint", "http://b"));
+    }
+
+    @Test
+    void recordDecision_concurrentIncrementsAreNotLost() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.recordDecision(domain, test, variant1, endpointA);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(80_000, count("abra.routing.variant.requests", "variant", "v1"));
+        assertEquals(1, meterRegistry.find("abra.routing.variant.requests").functionCounters().size());
+    }
+
+    @Test
+    void configChange_dropsCountersAndMetersOfRemovedVariantsAndEndpoints() {
+        metrics.recordDecision(domain, test, variant1, endpointA);
+        metrics.recordDecision(domain, test, variant2, endpointB);
+
+        // Variant 2, and with it endpoint b, is removed from the test
+        DomainRoute remaining = new DomainRoute("d1", "shop.example", RoutingMode.PROXY,
+            List.of(new TestRoute("t1", "Cart", "/cart", List.of(variant1))));
+        when(routingTable.current()).thenReturn(new RoutingSnapshot(2, 0, Map.of("shop.example", remaining)));
+        metrics.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.VARIANT, "v2"));
+
+        assertEquals(1, count("abra.routing.variant.requests", "variant", "v1"));
+        assertNull(meterRegistry.find("abra.routing.variant.requests").tag("variant", "v2").meter());
+        assertNull(meterRegistry.find("abra.routing.endpoint.requests").tag("endpoint", "http://b").meter());
+        assertEquals(List.of("v1"), List.copyOf(metrics.variantCounts().keySet()));
+        assertEquals(List.of("http://a"), List.copyOf(metrics.endpointCounts().keySet()));
+    }
+
+    @Test
+    void configChange_dropsCountersAndMetersOfRemovedDomainsAndTests() {
+        TestRoute other = new TestRoute("t2", "Checkout", "/checkout", List.of(variant2));
+        DomainRoute otherDomain = new DomainRoute("d2", "blog.example", RoutingMode.PROXY, List.of(other));
+        metrics.recordDecision(domain, test, variant1, endpointA);
+        metrics.recordDecision(otherDomain, other, variant2, endpointB);
+
+        // The blog domain is removed along with its test
+        when(routingTable.current()).thenReturn(new RoutingSnapshot(2, 0, Map.of("shop.example", domain)));
+        metrics.onRoutingConfigChanged(new RoutingConfigChangedEvent(this, RoutingEntityType.DOMAIN, "d2"));
+
+        assertEquals(1, count("abra.routing.domain.requests", "domain", "shop.example"));
+        assertEquals(1, count("abra.routing.test.requests", "test", "t1"));
+        assertNull(meterRegistry.find("abra.routing.domain.requests").tag("domain", "blog.example").meter());
+        assertNull(meterRegistry.find("abra.routing.test.requests").tag("test", "t2").meter());
+    }
+
+    private double count(String name, String tag, String value) {
+        return meterRegistry.get(name).tag(tag, value).functionCounter().count();
+    }
+}
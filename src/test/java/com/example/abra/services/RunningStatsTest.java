@@ -0,0 +1,64 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class RunningStatsTest {
+
+    @Test
+    void add_computesMeanAndSampleVariance() {
+        RunningStats stats = new RunningStats();
+        for (double value : new double[] {2, 4, 4, 4, 5, 5, 7, 9}) {
+            stats.add(value);
+        }
+
+        assertEquals(8, stats.getCount());
+        assertEquals(5.0, stats.getMean(), 1e-12);
+        assertEquals(32.0 / 7, stats.getVariance(), 1e-12);
+        assertEquals(40.0, stats.getSum(), 1e-9);
+    }
+
+    @Test
+    void of_restoresFromSums() {
+        RunningStats stats = RunningStats.of(8, 40, 232);
+
+        assertEquals(8, stats.getCount());
+        assertEquals(5.0, stats.getMean(), 1e-12);
+        assertEquals(32.0 / 7, stats.getVariance(), 1e-12);
+        assertEquals(0, RunningStats.of(0, 0, 0).getCount());
+    }
+
+    @Test
+    void merge_equalsSinglePass() {
+        RunningStats all = new RunningStats();
+        RunningStats left = new RunningStats();
+        RunningStats right = new RunningStats();
+        for (int i = 0; i < 1000; i++) {
+            double value = 1e6 + (i % 7) * 0.5;
+            all.add(value);
+            (i < 300 ? left : right).add(value);
+        }
+
+        left.merge(right);
+
+        assertEquals(all.getCount(), left.getCount());
+        assertEquals(all.getMean(), left.getMean(), 1e-6);
+        assertEquals(all.getVariance(), left.getVariance(), 1e-9);
+    }
+
+    @Test
+    void merge_intoEmptyCopiesOther() {
+        RunningStats other = new RunningStats();
+        other.add(3);
+        other.add(5);
+
+        RunningStats empty = new RunningStats();
+        empty.merge(other);
+        empty.merge(new RunningStats());
+
+        assertEquals(2, empty.getCount());
+        assertEquals(4.0, empty.getMean());
+        assertEquals(2.0, empty.getVariance());
+    }
+}
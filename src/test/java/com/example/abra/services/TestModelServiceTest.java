@@ -23,6 +23,9 @@ class TestModelServiceTest {
     @Mock
     private TestModelRepository repository;
 
+    @Mock
+    private RoutingConfigVersionService routingConfigVersionService;
+
     @InjectMocks
     private TestModelService service;
 
@@ -84,11 +87,13 @@ class TestModelServiceTest {
     void updateTest_callsSave() {
         service.updateTest(sample);
         verify(repository).save(sample);
+        verify(routingConfigVersionService).bump();
     }
 
     @Test
     void deleteTestById_callsRepository() {
         service.deleteTestById("id-1");
         verify(repository).deleteById("id-1");
+        verify(routingConfigVersionService).bump();
     }
 }
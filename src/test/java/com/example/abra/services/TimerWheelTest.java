@@ -0,0 +1,62 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TimerWheelTest {
+
+    private final TimerWheel<String> wheel = new TimerWheel<>(10, 8);
+
+    @Test
+    void itemsBecomeDueAtTheirTick() {
+        wheel.schedule("a", 0, 30);
+        wheel.schedule("b", 0, 55);
+
+        assertEquals(List.of(), advance(20));
+        assertEquals(List.of("a"), advance(30));
+        assertEquals(List.of(), advance(50));
+        assertEquals(List.of("b"), advance(60));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void delaysLongerThanOneRotation_waitForTheirRound() {
+        wheel.schedule("far", 0, 250);
+
+        assertEquals(List.of(), advance(80));
+        assertEquals(List.of(), advance(160));
+        assertEquals(List.of("far"), advance(250));
+    }
+
+    @Test
+    void longPause_expiresEverythingOverdue() {
+        wheel.schedule("a", 0, 10);
+        wheel.schedule("b", 0, 70);
+        wheel.schedule("c", 0, 500);
+
+        List<String> due = advance(1000);
+        assertTrue(due.containsAll(List.of("a", "b", "c")));
+    }
+
+    @Test
+    void itemsCanBeRescheduledFromTheCallback() {
+        wheel.schedule("a", 0, 10);
+        List<String> due = new ArrayList<>();
+        wheel.advance(10, item -> {
+            due.add(item);
+            wheel.schedule(item, 10, 10);
+        });
+
+        assertEquals(List.of("a"), due);
+        assertEquals(List.of("a"), advance(20));
+    }
+
+    private List<String> advance(long now) {
+        List<String> due = new ArrayList<>();
+        wheel.advance(now, due::add);
+        return due;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.abra.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.example.abra.models.RoutingMode;
+import com.example.abra.routing.DomainRoute;
+import com.example.abra.routing.EndpointRoute;
+import com.example.abra.routing.RoutingConfigChangedEvent;
+import com.example.abra.routing.RoutingEntityType;
+import com.example.abra.routing.RoutingSnapshot;
+import com.example.abra.routing.RoutingTable;
+import com.example.abra.routing.TestRoute;
+import com.example.abra.routing.VariantRoute;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TrafficRollupsTest {
+
+    private final EndpointRoute endpointA = new EndpointRoute("http://a", true, true);
+    private final EndpointRoute endpointB = new EndpointRoute("http://b", true, true);
+    private final VariantRoute variant = new VariantRoute("v1", "A", 100, null, List.of(endpointA, endpointB));
+    private final TestRoute test = new TestRoute("t1", "Cart", "/cart", List.of(variant));
+    private final DomainRoute domain = new DomainRoute("d1", "shop.example", RoutingMode.PROXY, List.of(test));
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toMillis(1000));
+    private final DecisionLog decisionLog = mock(DecisionLog.class);
+    private final RoutingTable routingTable = mock(RoutingTable.class);
+    private final RoutingMetrics routingMetrics = new RoutingMetrics(new SimpleMeterRegistry(), routingTable);
+    private TrafficRollups rollups;
+
+    @TempDir
+    Path directory;
+
+    @BeforeEach
+    void setUp() {
+        when(routingTable.current()).thenReturn(snapshotOf(domain));
+        rollups = newRollups(routingMetrics);
+    }
+
+    @Test
+    void tick_addsRequestsSincePreviousTickToEveryResolution() {
+        route(endpointA, 3);
+        route(endpointB, 1);
+        tick();
+        route(endpointA, 2);
+        tick();
+
+        TrafficRollups.TrafficSeries seconds = single(TrafficRollups.VARIANT, "v1", TrafficRollups.Resolution.SECOND, 3);
+        assertArrayEquals(new long[] {0, 4, 2}, seconds.counts());
+        assertEquals(1, seconds.stepSeconds());
+
+        TrafficRollups.TrafficSeries minutes = single(TrafficRollups.ENDPOINT, "http://a", TrafficRollups.Resolution.MINUTE, 1);
+        assertArrayEquals(new long[] {5}, minutes.counts());
+        assertEquals(5 / 60.0, minutes.rates()[0], 1e-12);
+    }
+
+    @Test
+    void secondsExpireWhileCoarserResolutionsKeepTheirSums() {
+        route(endpointA, 10);
+        tick();
+        now.addAndGet(TimeUnit.MINUTES.toMillis(20));
+        tick();
+
+        TrafficRollups.TrafficSeries seconds = single(TrafficRollups.VARIANT, "v1", TrafficRollups.Resolution.SECOND, 600);
+        assertEquals(0, sum(seconds.counts()));
+
+        TrafficRollups.TrafficSeries minutes = single(TrafficRollups.VARIANT, "v1", TrafficRollups.Resolution.MINUTE, 30);
+        assertEquals(10, sum(minutes.counts()));
+        assertEquals(10, minutes.counts()[9]);
+    }
+
+    @Test
+    void query_listsAllSeriesOrRejectsUnknownScope() {
+        route(endpointB, 1);
+        route(endpointA, 1);
+        tick();
+
+        List<TrafficRollups.TrafficSeries> endpoints =
+            rollups.query(TrafficRollups.ENDPOINT, null, TrafficRollups.Resolution.HOUR, 5);
+
+        assertEquals(List.of("http://a", "http://b"), endpoints.stream().map(TrafficRollups.TrafficSeries::id).toList());
+        assertEquals(5, endpoints.get(0).counts().length);
+        assertTrue(rollups.query(TrafficRollups.ENDPOINT, "http://c", TrafficRollups.Resolution.HOUR, 5).isEmpty());
+        assertNull(rollups.query("domain", null, TrafficRollups.Resolution.HOUR, 5));
+    }
+
+    @Test
+    void init_restoresHistoryFromDecisionLog() throws Exception {
+        DecisionLog log = new DecisionLog(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(log, "enabled", true);
+        ReflectionTestUtils.setField(log, "directory", directory.toString());
+        ReflectionTestUtils.setField(log, "segmentBytes", 4096);
+        ReflectionTestUtils.setField(log, "rollIntervalMs", 3_600_000L);
+        ReflectionTestUtils.setField(log, "maxSegments", 10);
+        ReflectionTestUtils.setField(log, "clock", (LongSupplier) now::get);
+        log.init();
+        log.append(domain, "/cart", test, variant, endpointA, 0);
+        now.addAndGet(TimeUnit.MINUTES.toMillis(2));
+        log.append(domain, "/cart", test, variant, endpointB, 0);
+        log.shutdown();
+        when(decisionLog.getDirectory()).thenReturn(directory);
+        when(decisionLog.getRetentionMillis()).thenReturn(TimeUnit.HOURS.toMillis(10));
+        now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+
+        rollups.init();
+
+        // Restoring runs in the background
+        long deadline = System.currentTimeMillis() + 5000;
+        List<TrafficRollups.TrafficSeries> series;
+        do {
+            Thread.sleep(10);
+            series = rollups.query(TrafficRollups.ENDPOINT, null, TrafficRollups.Resolution.MINUTE, 4);
+        } while (series.size() < 2 && System.currentTimeMillis() < deadline);
+        assertEquals(2, series.size());
+        assertArrayEquals(new long[] {0, 1, 0, 0}, series.get(0).counts());
+        assertArrayEquals(new long[] {0, 1, 0, 1},
+            single(TrafficRollups.VARIANT, "v1", TrafficRollups.Resolution.MINUTE, 4).counts());
+    }
+
+    @Test
+    void configChange_dropsSeriesAndCountsOfRemovedVariantsAndEndpoints() {
+        route(endpointA, 3);
+        route(endpointB, 2);
+        tick();
+        // Endpoint b is removed from the variant
+        VariantRoute remaining = new VariantRoute("v1", "A", 100, null, List.of(endpointA));
+        when(routingTable.current()).thenReturn(snapshotOf(new DomainRoute("d1", "shop.example", RoutingMode.PROXY,
+            List.of(new TestRoute("t1", "Cart", "/cart", List.of(remaining))))));
+
+        RoutingConfigChangedEvent event = new RoutingConfigChangedEvent(this, RoutingEntityType.ENDPOINT, "http://b");
+        rollups.onRoutingConfigChanged(event);
+        // A tick before RoutingMetrics drops the endpoint's count does not bring its series back
+        tick();
+        routingMetrics.onRoutingConfigChanged(event);
+        tick();
+
+        List<TrafficRollups.TrafficSeries> endpoints =
+            rollups.query(TrafficRollups.ENDPOINT, null, TrafficRollups.Resolution.MINUTE, 1);
+        assertEquals(List.of("http://a"), endpoints.stream().map(TrafficRollups.TrafficSeries::id).toList());
+        assertFalse(routingMetrics.endpointCounts().containsKey("http://b"));
+        assertEquals(5, sum(single(TrafficRollups.VARIANT, "v1", TrafficRollups.Resolution.MINUTE, 1).counts()));
+
+        // Routed again after being re-added, it starts from zero instead of its old total
+        when(routingTable.current()).thenReturn(snapshotOf(domain));
+        route(endpointB, 1);
+        tick();
+        assertEquals(1, sum(single(TrafficRollups.ENDPOINT, "http://b", TrafficRollups.Resolution.MINUTE, 1).counts()));
+    }
+
+    private static RoutingSnapshot snapshotOf(DomainRoute domainRoute) {
+        return new RoutingSnapshot(1, 0, Map.of(domainRoute.getHost(), domainRoute));
+    }
+
+    private void route(EndpointRoute endpoint, int requests) {
+        for (int i = 0; i < requests; i++) {
+            routingMetrics.recordDecision(domain, test, variant, endpoint);
+        }
+    }
+
+    private void tick() {
+        now.addAndGet(1000);
+        rollups.tick();
+    }
+
+    private TrafficRollups.TrafficSeries single(String scope, String id, TrafficRollups.Resolution resolution, int points) {
+        List<TrafficRollups.TrafficSeries> series = rollups.query(scope, id, resolution, points);
+        assertEquals(1, series.size());
+        return series.get(0);
+    }
+
+    private TrafficRollups newRollups(RoutingMetrics metrics) {
+        TrafficRollups trafficRollups = new TrafficRollups(metrics, decisionLog, routingTable);
+        ReflectionTestUtils.setField(trafficRollups, "secondBuckets", 600);
+        ReflectionTestUtils.setField(trafficRollups, "minuteBuckets", 60);
+        ReflectionTestUtils.setField(trafficRollups, "hourBuckets", 24);
+        ReflectionTestUtils.setField(trafficRollups, "restore", true);
+        ReflectionTestUtils.setField(trafficRollups, "clock", (LongSupplier) now::get);
+        return trafficRollups;
+    }
+
+    private static long sum(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+}
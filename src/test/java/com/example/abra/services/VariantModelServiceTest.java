@@ -19,6 +19,9 @@ class VariantModelServiceTest {
     @Mock
     private VariantModelRepository repository;
 
+    @Mock
+    private RoutingConfigVersionService routingConfigVersionService;
+
     @InjectMocks
     private VariantModelService service;
 
@@ -66,11 +69,13 @@ class VariantModelServiceTest {
         VariantModel vm = new VariantModel();
         service.updateVariant(vm);
         verify(repository).save(vm);
+        verify(routingConfigVersionService).bump();
     }
 
     @Test
     void deleteVariantById_callsDelete() {
         service.deleteVariantById("v1");
         verify(repository).deleteById("v1");
+        verify(routingConfigVersionService).bump();
     }
 }
@@ -0,0 +1,359 @@
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ABRA virtual thread concurrency benchmark.
+ * <p>
+ * Measures how many concurrent connections the routing filter can serve in PROXY mode when
+ * every upstream call blocks for a fixed delay:
+ * <ol>
+ *     <li>starts a mock upstream that answers routed requests after {@code --delay-ms},</li>
+ *     <li>sets up a PROXY-mode domain with one test, one variant and one endpoint,</li>
+ *     <li>keeps increasing numbers of keep-alive connections busy and reports throughput,
+ *     latency percentiles and errors per level.</li>
+ * </ol>
+ * Each connection is driven by its own virtual thread over a raw socket, so the load generator
+ * itself does not run out of threads before the gateway does.
+ * <p>
+ * Run it with the JDK 21 source launcher, once per threading mode of the gateway:
+ * <pre>
+ * ABRA_VIRTUAL_THREADS=false ./gradlew bootRun
+ * java test-simulation/VirtualThreadBenchmark.java --label platform
+ *
+ * ABRA_VIRTUAL_THREADS=true ./gradlew bootRun
+ * java test-simulation/VirtualThreadBenchmark.java --label virtual
+ * </pre>
+ */
+public class VirtualThreadBenchmark {
+
+    private static final String GATEWAY_HOST = "localhost";
+    private static final int GATEWAY_PORT = 8080;
+    private static final String ADMIN_BASE_URL = "http://localhost:8080";
+    private static final String DOMAIN_HOST = "bench.local";
+    private static final int UPSTREAM_PORT = 9200;
+
+    private static final String ADMIN_USERNAME = "admin";
+    private static final String ADMIN_PASSWORD = "admin";
+
+    private static final HttpClient ADMIN_CLIENT = HttpClient.newHttpClient();
+
+    private static String jwtToken;
+
+    public static void main(String[] args) throws Exception {
+        String label = "gateway";
+        String levels = "50,100,200,400,800,1600";
+        double duration = 10;
+        int delayMs = 200;
+        double warmup = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--label" -> label = args[i + 1];
+                case "--levels" -> levels = args[i + 1];
+                case "--duration" -> duration = Double.parseDouble(args[i + 1]);
+                case "--delay-ms" -> delayMs = Integer.parseInt(args[i + 1]);
+                case "--warmup" -> warmup = Double.parseDouble(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        System.out.println("=".repeat(60));
+        System.out.println("ABRA VIRTUAL THREAD BENCHMARK");
+        System.out.println("=".repeat(60));
+        HttpServer upstream = startUpstream(delayMs);
+        jwtToken = login();
+        setupProxyDomain();
+        Thread.sleep(1000);
+
+        String[] connectionCounts = levels.split(",");
+        if (warmup > 0) {
+            // Let the JIT compile the routing path before anything is measured
+            runLevel(Integer.parseInt(connectionCounts[0].trim()), warmup);
+        }
+
+        double idealPerConnection = 1000.0 / delayMs;
+        System.out.printf("%n[%s] upstream delay %d ms, %.0f s per level after %.0f s warm-up%n", label, delayMs,
+            duration, warmup);
+        System.out.printf("%12s %10s %10s %10s %10s %8s%n", "connections", "req/s", "ideal", "p50 ms", "p99 ms",
+            "errors");
+        for (String level : connectionCounts) {
+            int connections = Integer.parseInt(level.trim());
+            LevelResult result = runLevel(connections, duration);
+            System.out.printf("%12d %10.0f %10.0f %10.1f %10.1f %8d%n", connections, result.throughput(),
+                connections * idealPerConnection, result.p50Millis(), result.p99Millis(), result.errors());
+        }
+        upstream.stop(0);
+    }
+
+    /**
+     * Answers health checks immediately and routed requests after a fixed delay.
+     */
+    private static HttpServer startUpstream(int delayMs) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(UPSTREAM_PORT), 4096);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestURI().getPath().startsWith("/bench")) {
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        System.out.printf("  ✓ Mock upstream on port %d (delay %d ms)%n", UPSTREAM_PORT, delayMs);
+        return server;
+    }
+
+    private static String login() throws IOException, InterruptedException {
+        HttpResponse<String> response = ADMIN_CLIENT.send(HttpRequest.newBuilder(URI.create(ADMIN_BASE_URL + "/api/auth/login"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(
+                    "{\"login\":\"" + ADMIN_USERNAME + "\",\"password\":\"" + ADMIN_PASSWORD + "\"}"))
+                .build(),
+            HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Authentication failed: " + response.statusCode() + " - " + response.body());
+        }
+        return field(response.body(), "token");
+    }
+
+    /**
+     * Create a PROXY-mode domain routing /bench to the mock upstream.
+     */
+    private static void setupProxyDomain() throws IOException, InterruptedException {
+        String domains = admin("GET", "/api/domains", null);
+        Matcher existing = Pattern.compile("\"domain_id\"\\s*:\\s*\"([^\"]+)\"[^{}]*?\"host\"\\s*:\\s*\""
+            + Pattern.quote(DOMAIN_HOST) + "\"").matcher(domains);
+        while (existing.find()) {
+            admin("DELETE", "/api/domains/" + existing.group(1), null);
+        }
+
+        String domainId = field(admin("POST", "/api/domains",
+            "{\"host\":\"" + DOMAIN_HOST + "\",\"active\":true,\"routingMode\":\"PROXY\"}"), "domain_id");
+        String testId = field(admin("POST", "/api/tests",
+            "{\"name\":\"Benchmark\",\"subpath\":\"/bench\",\"active\":true,"
+                + "\"domainModel\":{\"domain_id\":\"" + domainId + "\"}}"), "test_id");
+        String variantId = field(admin("POST", "/api/variants",
+            "{\"name\":\"Benchmark-A\",\"active\":true,\"weight\":100,"
+                + "\"testModel\":{\"test_id\":\"" + testId + "\"}}"), "variant_id");
+        admin("POST", "/api/endpoints",
+            "{\"url\":\"http://localhost:" + UPSTREAM_PORT + "\",\"active\":true,\"alive\":true,"
+                + "\"variantModel\":{\"variant_id\":\"" + variantId + "\"}}");
+        System.out.printf("  ✓ Created PROXY domain %s -> localhost:%d%n", DOMAIN_HOST, UPSTREAM_PORT);
+    }
+
+    private static String admin(String method, String path, String json) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(ADMIN_BASE_URL + path))
+            .header("Content-Type", "application/json")
+            .header("Authorization", "Bearer " + jwtToken)
+            .method(method, json == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(json));
+        return ADMIN_CLIENT.send(request.build(), HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    private static String field(String json, String name) {
+        Matcher matcher = Pattern.compile("\"" + Pattern.quote(name) + "\"\\s*:\\s*\"([^\"]+)\"").matcher(json);
+        if (!matcher.find()) {
+            throw new IllegalStateException("No " + name + " in " + json);
+        }
+        return matcher.group(1);
+    }
+
+    /**
+     * Keep {@code connections} keep-alive connections busy for {@code duration} seconds.
+     */
+    private static LevelResult runLevel(int connections, double duration) throws InterruptedException {
+        List<long[]> latencies = new ArrayList<>();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch ready = new CountDownLatch(connections);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] deadline = new long[1];
+        byte[] request = ("GET /bench HTTP/1.1\r\nHost: " + DOMAIN_HOST + "\r\n\r\n")
+            .getBytes(StandardCharsets.ISO_8859_1);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            workers.add(Thread.ofVirtual().start(() -> {
+                LatencyLog local = new LatencyLog();
+                Socket socket = null;
+                InputStream in = null;
+                ready.countDown();
+                try {
+                    start.await();
+                    while (System.nanoTime() < deadline[0]) {
+                        long started = System.nanoTime();
+                        try {
+                            if (socket == null) {
+                                socket = new Socket(GATEWAY_HOST, GATEWAY_PORT);
+                                socket.setSoTimeout(30_000);
+                                in = new BufferedInputStream(socket.getInputStream());
+                            }
+                            socket.getOutputStream().write(request);
+                            Response response = readResponse(in);
+                            if (response.status() == 200) {
+                                local.add(System.nanoTime() - started);
+                            } else {
+                                errors.incrementAndGet();
+                            }
+                            if (response.close()) {
+                                socket.close();
+                                socket = null;
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                            closeQuietly(socket);
+                            socket = null;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    closeQuietly(socket);
+                    synchronized (latencies) {
+                        latencies.add(local.toArray());
+                    }
+                }
+            }));
+        }
+        ready.await();
+        deadline[0] = System.nanoTime() + (long) (duration * 1e9);
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long[] all = latencies.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new LevelResult(all.length / duration, percentile(all, 0.5), percentile(all, 0.99), errors.get());
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))] / 1e6;
+    }
+
+    /**
+     * Read one HTTP/1.1 response, with a Content-Length or chunked body, off a keep-alive connection.
+     */
+    private static Response readResponse(InputStream in) throws IOException {
+        String statusLine = readLine(in);
+        if (statusLine == null) {
+            throw new IOException("Connection closed");
+        }
+        int status = Integer.parseInt(statusLine.split(" ", 3)[1]);
+        long contentLength = -1;
+        boolean chunked = false;
+        boolean close = false;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim().toLowerCase();
+            String value = line.substring(colon + 1).trim();
+            switch (name) {
+                case "content-length" -> contentLength = Long.parseLong(value);
+                case "transfer-encoding" -> chunked = value.toLowerCase().contains("chunked");
+                case "connection" -> close = value.equalsIgnoreCase("close");
+                default -> {
+                }
+            }
+        }
+        if (chunked) {
+            long size;
+            while ((size = Long.parseLong(readLine(in).split(";")[0].trim(), 16)) > 0) {
+                skip(in, size);
+                readLine(in);
+            }
+            // Trailers end with an empty line
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+            }
+        } else if (contentLength > 0) {
+            skip(in, contentLength);
+        }
+        return new Response(status, close);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                int length = line.length();
+                return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+            }
+            line.append((char) b);
+        }
+        return line.isEmpty() ? null : line.toString();
+    }
+
+    private static void skip(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            if (in.read() == -1) {
+                throw new IOException("Connection closed in body");
+            }
+            bytes--;
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Nothing left to do with a broken connection
+            }
+        }
+    }
+
+    private record Response(int status, boolean close) {
+    }
+
+    private record LevelResult(double throughput, double p50Millis, double p99Millis, long errors) {
+    }
+
+    /**
+     * Growable list of latencies in nanoseconds, one per worker.
+     */
+    private static final class LatencyLog {
+
+        private long[] values = new long[256];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}